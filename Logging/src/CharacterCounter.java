@@ -7,6 +7,7 @@ import java.nio.file.Paths;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 
 /**
@@ -167,6 +168,47 @@ public class CharacterCounter {
 		return total;
 	}
 
+	/**
+	 * This method replaces the Debug class with the Trace class. Recording a
+	 * trace is so cheap that we can leave it on all the time, and only look
+	 * at the trace when something goes wrong. Notice the messages are
+	 * constants, and the numbers are recorded separately.
+	 *
+	 * Note: The bug is still present in this code.
+	 *
+	 * @param file
+	 * @return number of characters
+	 */
+	public static int countWithTrace(Path file) {
+
+		int count = 0;
+		int total = 0;
+
+		char[] buffer = new char[SIZE];
+
+		try (
+			BufferedReader reader =
+					Files.newBufferedReader(file, Charset.forName("UTF-8"));
+		) {
+			while (count >= 0) {
+				count = reader.read(buffer);
+				Trace.record("Read {} characters into buffer.", count);
+
+				total += count;
+				Trace.record("Total number of characters is now {}.", total);
+			}
+
+			Trace.record("Finished reading file.");
+		} catch (IOException e) {
+			Trace.record("Unable to read file.");
+
+			// something went wrong, so now is when we want to see the trace
+			Trace.dump(System.out);
+		}
+
+		return total;
+	}
+
 	/**
 	 * Used by {@link #countWithLogging(Path)} to demonstrate the flexibility
 	 * of logging with log4j.
@@ -219,6 +261,12 @@ public class CharacterCounter {
 	 * remain in place. We added some assert statements and modified the code
 	 * a bit as well. We can disable these messages entirely in log4j2.xml.
 	 *
+	 * Even when disabled, a call like {@code logger.debug("{}", total)} still
+	 * has to turn {@code total} into an {@link Integer} object before log4j
+	 * can check the level. Inside a loop, that creates a lot of garbage. So
+	 * the messages inside the loop check the level first, and use
+	 * {@link Unbox#box(int)} to avoid creating objects when enabled too.
+	 *
 	 * @param file
 	 * @return number of characters
 	 */
@@ -236,12 +284,20 @@ public class CharacterCounter {
 		) {
 			logger.trace("Opened file successfully.");
 
+			boolean debug = logger.isDebugEnabled();
+
 			while (count >= 0) {
 				total += count;
-				logger.debug("Total number of characters is now {}.", total);
+
+				if (debug) {
+					logger.debug("Total number of characters is now {}.", Unbox.box(total));
+				}
 
 				count = reader.read(buffer);
-				logger.debug("Read {} characters into buffer.", count);
+
+				if (debug) {
+					logger.debug("Read {} characters into buffer.", Unbox.box(count));
+				}
 			}
 
 			// post-condition assert statement
@@ -289,6 +345,11 @@ public class CharacterCounter {
 		System.out.println(countWithDebug(path2));
 		System.out.println();
 
+		System.out.println("With Trace Statements:");
+		System.out.println(countWithTrace(path1));
+		System.out.println(countWithTrace(path2));
+		System.out.println();
+
 		System.out.println("With Logging:");
 		System.out.println(countWithLogging(path1));
 		System.out.println(countWithLogging(path2));
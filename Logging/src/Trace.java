@@ -0,0 +1,183 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class demonstrates a very fast way to trace what a program is doing,
+ * which is cheap enough to leave on all the time. Instead of printing every
+ * message like {@link Debug}, each thread records messages into its own
+ * fixed-size circular buffer (a "ring") in memory. The messages are only
+ * printed when asked for, for example after something goes wrong.
+ *
+ * Recording a message does not lock anything, print anything, or create any
+ * objects. Each record is a timestamp, a message, and a single number. The
+ * message must be a constant (like a string literal) with an optional
+ * {@code {}} where the number goes, so that the message is only put together
+ * when it is printed. Once a ring is full, the oldest records are replaced.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ */
+public class Trace {
+
+	/** Number of records kept per thread. Must be a power of 2. */
+	public static final int CAPACITY = 1 << 10;
+
+	/** Turns a record number into a slot in the ring. */
+	private static final int MASK = CAPACITY - 1;
+
+	/** Every ring created so far, so they can all be printed. */
+	private static final ConcurrentLinkedQueue<Ring> rings = new ConcurrentLinkedQueue<>();
+
+	/** The ring of the current thread, created the first time it is used. */
+	private static final ThreadLocal<Ring> local = new ThreadLocal<Ring>() {
+		@Override
+		protected Ring initialValue() {
+			Ring ring = new Ring(Thread.currentThread().getName());
+			rings.add(ring);
+			return ring;
+		}
+	};
+
+	/**
+	 * The records of a single thread. Only that thread ever writes to its
+	 * ring, so no locking is needed. Other threads may read the ring when
+	 * printing it.
+	 */
+	private static class Ring {
+		private final String thread;
+		private final long[] times;
+		private final String[] messages;
+		private final long[] values;
+
+		/**
+		 * Number of records ever added. Updated after a record is written,
+		 * so a reader that sees the new count also sees the record.
+		 */
+		private final AtomicLong added;
+
+		public Ring(String thread) {
+			this.thread = thread;
+			this.times = new long[CAPACITY];
+			this.messages = new String[CAPACITY];
+			this.values = new long[CAPACITY];
+			this.added = new AtomicLong();
+		}
+
+		public void add(String message, long value) {
+			long count = added.get();
+			int slot = (int) (count & MASK);
+
+			times[slot] = System.nanoTime();
+			messages[slot] = message;
+			values[slot] = value;
+
+			// lazySet is enough since only this thread writes, and is much
+			// cheaper than a full volatile write
+			added.lazySet(count + 1);
+		}
+	}
+
+	/**
+	 * A copy of one record, only created when printing.
+	 */
+	private static class Record {
+		private final String thread;
+		private final long time;
+		private final String message;
+		private final long value;
+
+		public Record(String thread, long time, String message, long value) {
+			this.thread = thread;
+			this.time = time;
+			this.message = message;
+			this.value = value;
+		}
+	}
+
+	/** Sorts records from oldest to newest. */
+	private static final Comparator<Record> OLDEST_FIRST = new Comparator<Record>() {
+		@Override
+		public int compare(Record one, Record two) {
+			return Long.compare(one.time, two.time);
+		}
+	};
+
+	/**
+	 * Records a message for the current thread.
+	 *
+	 * @param message constant message to record
+	 */
+	public static void record(String message) {
+		local.get().add(message, 0);
+	}
+
+	/**
+	 * Records a message and a number for the current thread. The number is
+	 * put in place of {@code {}} when the message is printed.
+	 *
+	 * @param message constant message to record
+	 * @param value number to include in the message
+	 */
+	public static void record(String message, long value) {
+		local.get().add(message, value);
+	}
+
+	/**
+	 * Prints the records of every thread, from oldest to newest. Threads
+	 * that keep recording while this prints may replace a few of their
+	 * oldest records, so those few may look out of place.
+	 *
+	 * @param out where to print the records
+	 */
+	public static void dump(PrintStream out) {
+		ArrayList<Record> records = new ArrayList<>();
+
+		for (Ring ring : rings) {
+			long added = ring.added.get();
+
+			for (long i = Math.max(0, added - CAPACITY); i < added; i++) {
+				int slot = (int) (i & MASK);
+				records.add(new Record(ring.thread, ring.times[slot],
+						ring.messages[slot], ring.values[slot]));
+			}
+		}
+
+		Collections.sort(records, OLDEST_FIRST);
+
+		long start = records.isEmpty() ? 0 : records.get(0).time;
+
+		for (Record record : records) {
+			out.printf("%,15d ns %s: %s%n", record.time - start, record.thread,
+					record.message.replace("{}", Long.toString(record.value)));
+		}
+	}
+
+	/**
+	 * Prints the records of every thread to the console whenever a thread
+	 * dies from an exception, after the usual stack trace.
+	 */
+	public static void dumpOnUncaughtException() {
+		final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread thread, Throwable e) {
+				if (previous != null) {
+					previous.uncaughtException(thread, e);
+				}
+				else {
+					System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+					e.printStackTrace();
+				}
+
+				dump(System.err);
+			}
+		});
+	}
+}
@@ -0,0 +1,255 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how much each version of the loop in {@code CharacterCounter}
+ * costs, from no debugging at all to full logging. Each version is run with
+ * different log levels and different places for the messages to go, so we
+ * can see what kind of debugging we can afford to leave in our code.
+ *
+ * The log level also turns the {@code Debug} class on (for debug or lower)
+ * or off. Assertions can only be turned on or off when Java starts, so
+ * {@link #main(String[])} runs every benchmark twice, once with the
+ * {@code -ea} flag and once without.
+ *
+ * JMH only generates code for benchmarks in a named package, but the demos
+ * are in the default package, which other packages cannot refer to. Instead,
+ * this class looks up each method once by name and keeps the
+ * {@link MethodHandle} in a {@code static final} field, which the JIT
+ * compiler inlines like a direct call. See the README for how to compile and
+ * run it.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharacterCounterBenchmark {
+
+	/** Size of the file to count in bytes. */
+	private static final int BYTES = 100000;
+
+	/** {@code CharacterCounter.countNoDebug(Path)} */
+	private static final MethodHandle NO_DEBUG = count("countNoDebug");
+
+	/** {@code CharacterCounter.countAssertions(Path)} */
+	private static final MethodHandle ASSERTIONS = count("countAssertions");
+
+	/** {@code CharacterCounter.countWithPrintln(Path)} */
+	private static final MethodHandle PRINTLN = count("countWithPrintln");
+
+	/** {@code CharacterCounter.countWithDebug(Path)} */
+	private static final MethodHandle DEBUG = count("countWithDebug");
+
+	/** {@code CharacterCounter.countWithTrace(Path)} */
+	private static final MethodHandle TRACE = count("countWithTrace");
+
+	/** {@code CharacterCounter.countWithLogging(Path)} */
+	private static final MethodHandle LOGGING = count("countWithLogging");
+
+	/** {@code CharacterCounter.countCharacters(Path)} */
+	private static final MethodHandle CHARACTERS = count("countCharacters");
+
+	/** Sets {@code Debug.on}. */
+	private static final MethodHandle DEBUG_ON;
+
+	static {
+		try {
+			DEBUG_ON = MethodHandles.publicLookup().findStaticSetter(
+					Class.forName("Debug"), "on", boolean.class);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find Debug.on", e);
+		}
+	}
+
+	/** Level of messages to log. */
+	@Param({ "ERROR", "INFO", "DEBUG", "TRACE" })
+	public String level;
+
+	/**
+	 * Where the messages go: "console", "file", or "async" (a file written by
+	 * a background thread). Each has a matching configuration file in the
+	 * benchmark directory.
+	 */
+	@Param({ "console", "file", "async" })
+	public String appender;
+
+	/** File to count. */
+	private Path file;
+
+	/**
+	 * Finds one of the counting methods of {@code CharacterCounter}, which
+	 * all take a file and return the number of characters.
+	 *
+	 * @param name name of the method
+	 * @return handle for calling the method
+	 * @throws IllegalStateException if the method cannot be found
+	 */
+	private static MethodHandle count(String name) {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName("CharacterCounter"),
+					name, MethodType.methodType(int.class, Path.class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find CharacterCounter." + name, e);
+		}
+	}
+
+	@Setup
+	public void setup() throws Throwable {
+		Configurator.reconfigure(CharacterCounterBenchmark.class
+				.getResource("benchmark/" + appender + ".xml").toURI());
+		Configurator.setRootLevel(Level.valueOf(level));
+
+		DEBUG_ON.invokeExact(Level.valueOf(level).isLessSpecificThan(Level.DEBUG));
+
+		file = Files.createTempFile("characters", ".txt");
+		byte[] line = "The quick brown fox jumps over the lazy dog.\n".getBytes();
+
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (int written = 0; written < BYTES; written += line.length) {
+				out.write(line);
+			}
+		}
+	}
+
+	@TearDown
+	public void teardown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public int noDebug() throws Throwable {
+		return (int) NO_DEBUG.invokeExact(file);
+	}
+
+	@Benchmark
+	public int assertions() throws Throwable {
+		return (int) ASSERTIONS.invokeExact(file);
+	}
+
+	@Benchmark
+	public int println() throws Throwable {
+		return (int) PRINTLN.invokeExact(file);
+	}
+
+	@Benchmark
+	public int debug() throws Throwable {
+		return (int) DEBUG.invokeExact(file);
+	}
+
+	@Benchmark
+	public int trace() throws Throwable {
+		return (int) TRACE.invokeExact(file);
+	}
+
+	@Benchmark
+	public int logging() throws Throwable {
+		return (int) LOGGING.invokeExact(file);
+	}
+
+	@Benchmark
+	public int characters() throws Throwable {
+		return (int) CHARACTERS.invokeExact(file);
+	}
+
+	/**
+	 * Finds the bytes allocated per operation, measured by the JMH garbage
+	 * collection profiler. The name of this result changed between versions
+	 * of JMH, so match the end of the name. JMH returns the results as a raw
+	 * {@link Result} type, so the entries must use the raw type too.
+	 *
+	 * @param result results of one benchmark
+	 * @return bytes allocated per operation, or NaN if not measured
+	 */
+	@SuppressWarnings("rawtypes")
+	private static double allocated(RunResult result) {
+		for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+			if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+				return entry.getValue().getScore();
+			}
+		}
+
+		return Double.NaN;
+	}
+
+	/**
+	 * Runs every benchmark with and without assertions enabled, and outputs
+	 * the throughput and bytes allocated per operation as comma-separated
+	 * values. The console appender prints a lot of messages, so it helps to
+	 * redirect the output to a file and look at the last lines.
+	 *
+	 * @param args optional regular expression of the benchmarks to run
+	 * @throws RunnerException if unable to run the benchmarks
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "";
+		String[] flags = { "-da", "-ea" };
+
+		ArrayList<String> lines = new ArrayList<>();
+
+		for (String flag : flags) {
+			Collection<RunResult> results = new Runner(new OptionsBuilder()
+					.include(CharacterCounterBenchmark.class.getSimpleName() + "\\." + include)
+					.jvmArgsAppend(flag)
+					.addProfiler("gc")
+					.build()).run();
+
+			for (RunResult result : results) {
+				String benchmark = result.getParams().getBenchmark();
+				String method = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+
+				lines.add(String.format("%s,%s,%s,%s,%.1f,%.0f", method,
+						result.getParams().getParam("level"),
+						result.getParams().getParam("appender"),
+						flag.equals("-ea"),
+						result.getPrimaryResult().getScore(), allocated(result)));
+			}
+		}
+
+		System.out.println();
+		System.out.println("benchmark,level,appender,assertions,ops/s,alloc bytes/op");
+
+		for (String line : lines) {
+			System.out.println(line);
+		}
+	}
+}
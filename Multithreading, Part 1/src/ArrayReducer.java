@@ -0,0 +1,883 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * Reduces primitive arrays (sum, min, max, count-if, and histogram) using a
+ * pool of threads that is created once and reused for every call. Compare
+ * this to {@link RandomArrayTotal#totalWithThreads(int[], int)}, which creates
+ * and starts new threads every time and pays for it on small arrays.
+ *
+ * Arrays are split into chunks the same way as in
+ * {@link RandomArrayTotal#total(int[], int)}, but the size of each chunk (the
+ * "grain") adapts to the array and the number of threads. Large arrays are
+ * split into a few chunks per thread, so a thread that finishes early can
+ * pick up more work instead of waiting on a slow one. However, every chunk
+ * must have at least {@link #MIN_GRAIN} elements, so smaller arrays use fewer
+ * chunks, and arrays smaller than {@link #MIN_GRAIN} are reduced sequentially
+ * without involving the pool at all.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see RandomArrayTotal
+ */
+public class ArrayReducer {
+
+	/**
+	 * Minimum number of elements per chunk. Below this, handing the work to
+	 * another thread costs more than doing the work ourselves.
+	 */
+	public static final int MIN_GRAIN = 1 << 14;
+
+	/** Number of chunks per thread to aim for when the array is large. */
+	public static final int CHUNKS_PER_THREAD = 4;
+
+	/** Reducers that have already been created, by number of threads. */
+	private static final ConcurrentHashMap<Integer, ArrayReducer> shared =
+			new ConcurrentHashMap<>();
+
+	/** Persistent pool of worker threads. */
+	private final ForkJoinPool pool;
+
+	/** Maximum number of chunks to split an array into. */
+	private final int threads;
+
+	/**
+	 * Initializes a reducer with its own pool of the specified number of
+	 * threads. The threads do not prevent the program from exiting.
+	 *
+	 * @param threads number of threads to use (at least 1)
+	 */
+	public ArrayReducer(int threads) {
+		this.threads = Math.max(1, threads);
+		this.pool = new ForkJoinPool(this.threads);
+	}
+
+	/**
+	 * Returns a reducer with the specified number of threads, creating it the
+	 * first time it is requested and reusing it afterwards.
+	 *
+	 * @param threads number of threads to use
+	 * @return shared reducer for that number of threads
+	 */
+	public static ArrayReducer shared(int threads) {
+		Integer key = Math.max(1, threads);
+		ArrayReducer reducer = shared.get(key);
+
+		if (reducer == null) {
+			reducer = new ArrayReducer(key);
+			ArrayReducer existing = shared.putIfAbsent(key, reducer);
+
+			// another thread may have created this reducer first
+			if (existing != null) {
+				reducer.shutdown();
+				reducer = existing;
+			}
+		}
+
+		return reducer;
+	}
+
+	/**
+	 * @return maximum number of threads used by this reducer
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns how many elements to put in each chunk of an array of the
+	 * specified length. Aims for {@link #CHUNKS_PER_THREAD} chunks per thread,
+	 * but never fewer than {@link #MIN_GRAIN} elements per chunk.
+	 *
+	 * @param length length of the array
+	 * @return number of elements per chunk
+	 */
+	public int grain(int length) {
+		return Math.max(MIN_GRAIN, length / (threads * CHUNKS_PER_THREAD));
+	}
+
+	/**
+	 * Returns how many chunks to split an array of the specified length into,
+	 * based on the {@link #grain(int)} for that length.
+	 *
+	 * @param length length of the array
+	 * @return number of chunks (at least 1)
+	 */
+	public int chunks(int length) {
+		return Math.max(1, length / grain(length));
+	}
+
+	/**
+	 * Stops the pool threads. This reducer may not be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Reduces a range of an array in two steps: first each chunk is reduced
+	 * on its own, and then the chunk results are combined in order.
+	 *
+	 * @param <R> type of result
+	 */
+	public interface Reduction<R> {
+
+		/**
+		 * Reduces the elements from {@code start} (inclusive) to {@code end}
+		 * (exclusive) into a single result.
+		 *
+		 * @param start first index
+		 * @param end index after the last
+		 * @return result for the range
+		 */
+		public R reduce(int start, int end);
+
+		/**
+		 * Combines the results of two neighboring ranges.
+		 *
+		 * @param left result of the range to the left
+		 * @param right result of the range to the right
+		 * @return combined result
+		 */
+		public R combine(R left, R right);
+	}
+
+	/**
+	 * Splits an array of the specified length into chunks, reduces each chunk
+	 * on the pool, and combines the results. The calling thread reduces the
+	 * last chunk itself instead of waiting idle.
+	 *
+	 * @param <R> type of result
+	 * @param length length of the array
+	 * @param reduction how to reduce and combine
+	 * @return reduced result
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public <R> R reduce(int length, Reduction<R> reduction) throws InterruptedException {
+		return reduce(length, chunks(length), reduction);
+	}
+
+	/**
+	 * Splits {@code length} items into the specified number of chunks, reduces
+	 * each chunk on the pool, and combines the results. Unlike
+	 * {@link #reduce(int, Reduction)}, does not enforce a minimum chunk size,
+	 * which is useful when each item is already a large amount of work.
+	 *
+	 * @param <R> type of result
+	 * @param length number of items
+	 * @param chunks number of chunks (between 1 and {@code length})
+	 * @param reduction how to reduce and combine
+	 * @return reduced result
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public <R> R reduce(int length, int chunks, Reduction<R> reduction) throws InterruptedException {
+		ArrayList<R> results = map(length, chunks, reduction);
+		R combined = results.get(0);
+
+		for (int i = 1; i < results.size(); i++) {
+			combined = reduction.combine(combined, results.get(i));
+		}
+
+		return combined;
+	}
+
+	/**
+	 * Splits {@code length} items into the specified number of chunks and
+	 * reduces each chunk on the pool, but does not combine the results. The
+	 * first chunk starts at 0, every chunk has {@code length / chunks} items,
+	 * and the last chunk also gets any remainder.
+	 *
+	 * @param <R> type of result
+	 * @param length number of items
+	 * @param chunks number of chunks (between 1 and {@code length})
+	 * @param reduction how to reduce each chunk
+	 * @return result of each chunk, in order
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	private <R> ArrayList<R> map(int length, int chunks, final Reduction<R> reduction) throws InterruptedException {
+		chunks = Math.max(1, Math.min(chunks, length));
+		ArrayList<R> results = new ArrayList<>(chunks);
+
+		if (chunks == 1) {
+			results.add(reduction.reduce(0, length));
+			return results;
+		}
+
+		int chunk = length / chunks;
+		int last = chunks - 1;
+
+		ArrayList<Future<R>> futures = new ArrayList<>(last);
+
+		for (int i = 0; i < last; i++) {
+			final int start = i * chunk;
+			final int end = start + chunk;
+
+			futures.add(pool.submit(new Callable<R>() {
+				@Override
+				public R call() {
+					return reduction.reduce(start, end);
+				}
+			}));
+		}
+
+		// account for any remainder in the last chunk
+		R result = reduction.reduce(last * chunk, length);
+
+		try {
+			for (Future<R> future : futures) {
+				results.add(future.get());
+			}
+
+			results.add(result);
+			return results;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Returns which chunk starts at the specified index, when splitting an
+	 * array as described in {@link #map(int, int, Reduction)}.
+	 *
+	 * @param start first index of the chunk
+	 * @param length length of the array
+	 * @param chunks number of chunks
+	 * @return index of the chunk
+	 */
+	private static int chunk(int start, int length, int chunks) {
+		return chunks == 1 ? 0 : start / (length / chunks);
+	}
+
+	/*
+	 * SUM
+	 */
+
+	/**
+	 * @param numbers array to total
+	 * @return total of the array
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long sum(final int[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				return RandomArrayTotal.fastSubtotal(numbers, start, end - start);
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to total
+	 * @return total of the array
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long sum(final long[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long total = 0;
+
+				for (int i = start; i < end; i++) {
+					total += numbers[i];
+				}
+
+				return total;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+	}
+
+	/**
+	 * Totals an array. Since floating-point addition is not associative, the
+	 * result may differ slightly depending on the number of chunks.
+	 *
+	 * @param numbers array to total
+	 * @return total of the array
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public double sum(final double[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Double>() {
+			@Override
+			public Double reduce(int start, int end) {
+				double total = 0;
+
+				for (int i = start; i < end; i++) {
+					total += numbers[i];
+				}
+
+				return total;
+			}
+
+			@Override
+			public Double combine(Double left, Double right) {
+				return left + right;
+			}
+		});
+	}
+
+	/*
+	 * MIN AND MAX
+	 */
+
+	/**
+	 * @param numbers array to search
+	 * @return smallest value, or {@link Integer#MAX_VALUE} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public int min(final int[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Integer>() {
+			@Override
+			public Integer reduce(int start, int end) {
+				int min = Integer.MAX_VALUE;
+
+				for (int i = start; i < end; i++) {
+					min = Math.min(min, numbers[i]);
+				}
+
+				return min;
+			}
+
+			@Override
+			public Integer combine(Integer left, Integer right) {
+				return Math.min(left, right);
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @return smallest value, or {@link Long#MAX_VALUE} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long min(final long[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long min = Long.MAX_VALUE;
+
+				for (int i = start; i < end; i++) {
+					min = Math.min(min, numbers[i]);
+				}
+
+				return min;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return Math.min(left, right);
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @return smallest value, or {@link Double#POSITIVE_INFINITY} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public double min(final double[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Double>() {
+			@Override
+			public Double reduce(int start, int end) {
+				double min = Double.POSITIVE_INFINITY;
+
+				for (int i = start; i < end; i++) {
+					min = Math.min(min, numbers[i]);
+				}
+
+				return min;
+			}
+
+			@Override
+			public Double combine(Double left, Double right) {
+				return Math.min(left, right);
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @return largest value, or {@link Integer#MIN_VALUE} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public int max(final int[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Integer>() {
+			@Override
+			public Integer reduce(int start, int end) {
+				int max = Integer.MIN_VALUE;
+
+				for (int i = start; i < end; i++) {
+					max = Math.max(max, numbers[i]);
+				}
+
+				return max;
+			}
+
+			@Override
+			public Integer combine(Integer left, Integer right) {
+				return Math.max(left, right);
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @return largest value, or {@link Long#MIN_VALUE} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long max(final long[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long max = Long.MIN_VALUE;
+
+				for (int i = start; i < end; i++) {
+					max = Math.max(max, numbers[i]);
+				}
+
+				return max;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return Math.max(left, right);
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @return largest value, or {@link Double#NEGATIVE_INFINITY} if empty
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public double max(final double[] numbers) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Double>() {
+			@Override
+			public Double reduce(int start, int end) {
+				double max = Double.NEGATIVE_INFINITY;
+
+				for (int i = start; i < end; i++) {
+					max = Math.max(max, numbers[i]);
+				}
+
+				return max;
+			}
+
+			@Override
+			public Double combine(Double left, Double right) {
+				return Math.max(left, right);
+			}
+		});
+	}
+
+	/*
+	 * COUNT IF
+	 */
+
+	/**
+	 * @param numbers array to search
+	 * @param test which values to count
+	 * @return number of values that pass the test
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long countIf(final int[] numbers, final IntPredicate test) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long count = 0;
+
+				for (int i = start; i < end; i++) {
+					if (test.test(numbers[i])) {
+						count++;
+					}
+				}
+
+				return count;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @param test which values to count
+	 * @return number of values that pass the test
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long countIf(final long[] numbers, final LongPredicate test) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long count = 0;
+
+				for (int i = start; i < end; i++) {
+					if (test.test(numbers[i])) {
+						count++;
+					}
+				}
+
+				return count;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+	}
+
+	/**
+	 * @param numbers array to search
+	 * @param test which values to count
+	 * @return number of values that pass the test
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long countIf(final double[] numbers, final DoublePredicate test) throws InterruptedException {
+		return reduce(numbers.length, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long count = 0;
+
+				for (int i = start; i < end; i++) {
+					if (test.test(numbers[i])) {
+						count++;
+					}
+				}
+
+				return count;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+	}
+
+	/*
+	 * HISTOGRAM
+	 */
+
+	/**
+	 * Adds together two histograms with the same number of bins, reusing the
+	 * left histogram for the result.
+	 *
+	 * @param left first histogram
+	 * @param right second histogram
+	 * @return combined histogram
+	 */
+	private static long[] merge(long[] left, long[] right) {
+		for (int i = 0; i < left.length; i++) {
+			left[i] += right[i];
+		}
+
+		return left;
+	}
+
+	/**
+	 * Counts how many values fall into each of {@code bins} equal-width bins
+	 * between {@code min} (inclusive) and {@code max} (exclusive). Values
+	 * outside of that range are not counted.
+	 *
+	 * @param numbers array to count
+	 * @param min smallest value of the first bin
+	 * @param max value after the largest value of the last bin
+	 * @param bins number of bins (should be positive)
+	 * @return number of values in each bin
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long[] histogram(final int[] numbers, final int min, final int max, final int bins) throws InterruptedException {
+		final long width = (long) max - min;
+
+		return reduce(numbers.length, new Reduction<long[]>() {
+			@Override
+			public long[] reduce(int start, int end) {
+				long[] counts = new long[bins];
+
+				for (int i = start; i < end; i++) {
+					if (numbers[i] >= min && numbers[i] < max) {
+						counts[(int) (((long) numbers[i] - min) * bins / width)]++;
+					}
+				}
+
+				return counts;
+			}
+
+			@Override
+			public long[] combine(long[] left, long[] right) {
+				return merge(left, right);
+			}
+		});
+	}
+
+	/**
+	 * Counts how many values fall into each of {@code bins} equal-width bins
+	 * between {@code min} (inclusive) and {@code max} (exclusive). Values
+	 * outside of that range are not counted.
+	 *
+	 * @param numbers array to count
+	 * @param min smallest value of the first bin
+	 * @param max value after the largest value of the last bin
+	 * @param bins number of bins (should be positive)
+	 * @return number of values in each bin
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long[] histogram(final long[] numbers, final long min, final long max, final int bins) throws InterruptedException {
+		final double width = (double) max - min;
+
+		return reduce(numbers.length, new Reduction<long[]>() {
+			@Override
+			public long[] reduce(int start, int end) {
+				long[] counts = new long[bins];
+
+				for (int i = start; i < end; i++) {
+					if (numbers[i] >= min && numbers[i] < max) {
+						int bin = (int) ((numbers[i] - (double) min) / width * bins);
+						counts[Math.min(bin, bins - 1)]++;
+					}
+				}
+
+				return counts;
+			}
+
+			@Override
+			public long[] combine(long[] left, long[] right) {
+				return merge(left, right);
+			}
+		});
+	}
+
+	/**
+	 * Counts how many values fall into each of {@code bins} equal-width bins
+	 * between {@code min} (inclusive) and {@code max} (exclusive). Values
+	 * outside of that range (including NaN) are not counted.
+	 *
+	 * @param numbers array to count
+	 * @param min smallest value of the first bin
+	 * @param max value after the largest value of the last bin
+	 * @param bins number of bins (should be positive)
+	 * @return number of values in each bin
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	public long[] histogram(final double[] numbers, final double min, final double max, final int bins) throws InterruptedException {
+		final double width = max - min;
+
+		return reduce(numbers.length, new Reduction<long[]>() {
+			@Override
+			public long[] reduce(int start, int end) {
+				long[] counts = new long[bins];
+
+				for (int i = start; i < end; i++) {
+					if (numbers[i] >= min && numbers[i] < max) {
+						int bin = (int) ((numbers[i] - min) / width * bins);
+						counts[Math.min(bin, bins - 1)]++;
+					}
+				}
+
+				return counts;
+			}
+
+			@Override
+			public long[] combine(long[] left, long[] right) {
+				return merge(left, right);
+			}
+		});
+	}
+
+	/*
+	 * PREFIX SUM (SCAN)
+	 */
+
+	/**
+	 * Replaces every value with the total of all values up to and including
+	 * it. Uses the same chunks as {@link #sum(int[])}. Like the values, the
+	 * running totals are integers, so they wrap around on overflow.
+	 *
+	 * @param numbers array to scan in place
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 *
+	 * @see #exclusiveScan(int[])
+	 */
+	public void inclusiveScan(int[] numbers) throws InterruptedException {
+		scan(numbers, true);
+	}
+
+	/**
+	 * Replaces every value with the total of all values before it, so the
+	 * first value becomes 0. Uses the same chunks as {@link #sum(int[])}. Like
+	 * the values, the running totals are integers, so they wrap around on
+	 * overflow.
+	 *
+	 * @param numbers array to scan in place
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 *
+	 * @see #inclusiveScan(int[])
+	 */
+	public void exclusiveScan(int[] numbers) throws InterruptedException {
+		scan(numbers, false);
+	}
+
+	/**
+	 * Replaces every value with the total of all values up to and including
+	 * it. Uses the same chunks as {@link #sum(long[])}.
+	 *
+	 * @param numbers array to scan in place
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 *
+	 * @see #exclusiveScan(long[])
+	 */
+	public void inclusiveScan(long[] numbers) throws InterruptedException {
+		scan(numbers, true);
+	}
+
+	/**
+	 * Replaces every value with the total of all values before it, so the
+	 * first value becomes 0. Uses the same chunks as {@link #sum(long[])}.
+	 *
+	 * @param numbers array to scan in place
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 *
+	 * @see #inclusiveScan(long[])
+	 */
+	public void exclusiveScan(long[] numbers) throws InterruptedException {
+		scan(numbers, false);
+	}
+
+	/**
+	 * Scans an array in place in two passes over the same chunks. The first
+	 * pass only totals each chunk. Those totals are then scanned sequentially
+	 * (there is only one per chunk) to find the starting offset of each chunk.
+	 * The second pass scans each chunk on its own, starting from its offset.
+	 *
+	 * @param numbers array to scan in place
+	 * @param inclusive whether to include each value in its own total
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 */
+	private void scan(final int[] numbers, final boolean inclusive) throws InterruptedException {
+		final int length = numbers.length;
+		final int chunks = chunks(length);
+
+		ArrayList<Long> totals = map(length, chunks, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				return RandomArrayTotal.fastSubtotal(numbers, start, end - start);
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+
+		final int[] offsets = new int[chunks];
+
+		for (int i = 1; i < chunks; i++) {
+			offsets[i] = (int) (offsets[i - 1] + totals.get(i - 1));
+		}
+
+		map(length, chunks, new Reduction<Void>() {
+			@Override
+			public Void reduce(int start, int end) {
+				int total = offsets[chunk(start, length, chunks)];
+
+				for (int i = start; i < end; i++) {
+					int value = numbers[i];
+					numbers[i] = inclusive ? total + value : total;
+					total += value;
+				}
+
+				return null;
+			}
+
+			@Override
+			public Void combine(Void left, Void right) {
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Scans an array in place in two passes over the same chunks.
+	 *
+	 * @param numbers array to scan in place
+	 * @param inclusive whether to include each value in its own total
+	 * @throws InterruptedException if interrupted while waiting on the pool
+	 *
+	 * @see #scan(int[], boolean)
+	 */
+	private void scan(final long[] numbers, final boolean inclusive) throws InterruptedException {
+		final int length = numbers.length;
+		final int chunks = chunks(length);
+
+		ArrayList<Long> totals = map(length, chunks, new Reduction<Long>() {
+			@Override
+			public Long reduce(int start, int end) {
+				long total = 0;
+
+				for (int i = start; i < end; i++) {
+					total += numbers[i];
+				}
+
+				return total;
+			}
+
+			@Override
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		});
+
+		final long[] offsets = new long[chunks];
+
+		for (int i = 1; i < chunks; i++) {
+			offsets[i] = offsets[i - 1] + totals.get(i - 1);
+		}
+
+		map(length, chunks, new Reduction<Void>() {
+			@Override
+			public Void reduce(int start, int end) {
+				long total = offsets[chunk(start, length, chunks)];
+
+				for (int i = start; i < end; i++) {
+					long value = numbers[i];
+					numbers[i] = inclusive ? total + value : total;
+					total += value;
+				}
+
+				return null;
+			}
+
+			@Override
+			public Void combine(Void left, Void right) {
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counts the characters in UTF-8 files using asynchronous reads. Several
+ * reads per file are started at once, and each buffer is counted as soon as
+ * its read completes, so no caller waits on a read and several files make
+ * progress together.
+ *
+ * The reads are not as asynchronous as the API suggests. On Linux and macOS,
+ * {@link AsynchronousFileChannel} simulates file reads by running each one as
+ * a blocking read on a thread of the pool passed to
+ * {@link AsynchronousFileChannel#open(Path, java.util.Set, ExecutorService, java.nio.file.attribute.FileAttribute...)},
+ * the same pool that counts the buffers. At most {@code threads} reads are in
+ * flight no matter how large the depth is, and the extra reads wait in the
+ * pool's queue. Only Windows hands the reads to the operating system.
+ *
+ * The characters are counted from the raw bytes using
+ * {@link CharacterCounter#countCodeUnits(ByteBuffer)}. Every byte is counted
+ * on its own, so the file can be read in any order and in pieces that split
+ * characters apart.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see {@link CharacterCounter}
+ */
+public class AsyncCharacterCounter {
+
+	private static final Logger logger = LogManager.getLogger(AsyncCharacterCounter.class);
+
+	/** Default number of reads started per file. */
+	public static final int DEPTH = 4;
+
+	/** Default size of each read in bytes. */
+	public static final int BUFFER = 1 << 16;
+
+	/** Default number of files counted at once by {@link #countAll(Iterable)}. */
+	public static final int FILES = 16;
+
+	/** Runs the reads (except on Windows) and the completion handlers. */
+	private final ExecutorService pool;
+
+	/** Number of reads started per file. */
+	private final int depth;
+
+	/** Size of each read in bytes. */
+	private final int buffer;
+
+	/**
+	 * Initializes a counter with {@link #DEPTH} reads of {@link #BUFFER} bytes
+	 * started per file.
+	 *
+	 * @param threads number of threads to count with
+	 */
+	public AsyncCharacterCounter(int threads) {
+		this(threads, DEPTH, BUFFER);
+	}
+
+	/**
+	 * Initializes a counter.
+	 *
+	 * @param threads number of threads to count with
+	 * @param depth number of reads started per file
+	 * @param buffer size of each read in bytes
+	 */
+	public AsyncCharacterCounter(int threads, int depth, int buffer) {
+		if (threads < 1 || depth < 1 || buffer < 1) {
+			throw new IllegalArgumentException("Threads, depth, and buffer must be positive.");
+		}
+
+		this.depth = depth;
+		this.buffer = buffer;
+
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger created = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "AsyncCounter-" + created.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts counting the characters in a file, and returns right away.
+	 *
+	 * @param file file to count
+	 * @return number of characters (UTF-16 code units) once counted, which
+	 * fails with an {@link IOException} if unable to read the file
+	 */
+	public CompletableFuture<Long> count(Path file) {
+		CompletableFuture<Long> result = new CompletableFuture<>();
+
+		AsynchronousFileChannel channel = null;
+
+		try {
+			channel = AsynchronousFileChannel.open(file,
+					Collections.singleton(StandardOpenOption.READ), pool);
+
+			new FileCount(file, channel, result).start();
+		}
+		catch (IOException | RuntimeException e) {
+			result.completeExceptionally(e);
+
+			try {
+				if (channel != null) {
+					channel.close();
+				}
+			}
+			catch (IOException ignored) {
+				logger.debug("Unable to close {}.", file);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Counts the characters in many files at once, with at most
+	 * {@link #FILES} files open at a time, and waits for all of them to finish.
+	 *
+	 * @param files files to count
+	 * @return number of characters in each file, or -1 if unable to count
+	 * @throws InterruptedException if interrupted while waiting
+	 *
+	 * @see #countAll(Iterable, int)
+	 */
+	public Map<Path, Long> countAll(Iterable<Path> files) throws InterruptedException {
+		return countAll(files, FILES);
+	}
+
+	/**
+	 * Counts the characters in many files at once, and waits for all of them
+	 * to finish. Every file being counted holds a file descriptor and its own
+	 * direct buffers, so only {@code limit} files are counted at a time. The
+	 * next file starts as soon as another one finishes.
+	 *
+	 * @param files files to count
+	 * @param limit maximum number of files to count at a time
+	 * @return number of characters in each file, or -1 if unable to count
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Map<Path, Long> countAll(Iterable<Path> files, int limit) throws InterruptedException {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Limit must be positive.");
+		}
+
+		LinkedHashMap<Path, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+		final Semaphore open = new Semaphore(limit);
+
+		BiConsumer<Long, Throwable> release = new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(Long count, Throwable e) {
+				open.release();
+			}
+		};
+
+		// start each file as soon as there is room, before waiting on any
+		for (Path file : files) {
+			open.acquire();
+
+			CompletableFuture<Long> future = count(file);
+			future.whenComplete(release);
+			futures.put(file, future);
+		}
+
+		LinkedHashMap<Path, Long> counts = new LinkedHashMap<>();
+
+		for (Map.Entry<Path, CompletableFuture<Long>> entry : futures.entrySet()) {
+			try {
+				counts.put(entry.getKey(), entry.getValue().get());
+			}
+			catch (ExecutionException e) {
+				logger.error("Unable to count characters for {}.", entry.getKey());
+				logger.debug("Unable to count characters.", e.getCause());
+				counts.put(entry.getKey(), -1L);
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Stops the threads once any counts in progress finish.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Keeps track of one file being counted. The file is handed out in
+	 * buffer-sized chunks to {@link #depth} readers, which each read their
+	 * chunk, count it, and then claim the next chunk until none are left.
+	 */
+	private class FileCount {
+		private final Path file;
+		private final AsynchronousFileChannel channel;
+		private final CompletableFuture<Long> result;
+
+		/** Start of the next chunk nobody has claimed. */
+		private final AtomicLong next;
+
+		/** Characters counted so far. */
+		private final AtomicLong total;
+
+		/** Readers that have not finished yet. */
+		private final AtomicInteger active;
+
+		private final long size;
+
+		public FileCount(Path file, AsynchronousFileChannel channel,
+				CompletableFuture<Long> result) throws IOException {
+			this.file = file;
+			this.channel = channel;
+			this.result = result;
+			this.size = channel.size();
+			this.next = new AtomicLong();
+			this.total = new AtomicLong();
+
+			// no point in more readers than chunks
+			long chunks = (size + buffer - 1) / buffer;
+			this.active = new AtomicInteger((int) Math.max(1, Math.min(depth, chunks)));
+		}
+
+		/**
+		 * Starts every reader.
+		 */
+		public void start() {
+			logger.debug("Counting characters in file \"{}\".", file);
+
+			for (int i = active.get(); i > 0; i--) {
+				new Reader().claim();
+			}
+		}
+
+		/**
+		 * Called once by each reader when there is nothing left for it to
+		 * read. The last reader to finish completes the result.
+		 */
+		private void finished() {
+			if (active.decrementAndGet() == 0) {
+				close();
+
+				logger.debug("Found {} characters total in {}.", total.get(), file);
+				result.complete(total.get());
+			}
+		}
+
+		/**
+		 * Fails the result. Any readers still in flight will fail too once the
+		 * channel is closed, but a result can only be completed once.
+		 *
+		 * @param e the cause of the failure
+		 */
+		private void failed(Throwable e) {
+			close();
+			result.completeExceptionally(e);
+		}
+
+		private void close() {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				logger.debug("Unable to close {}.", file, e);
+			}
+		}
+
+		/**
+		 * Reads one chunk at a time into its own buffer. Each completed read
+		 * is handled by a thread from the pool, which counts the bytes and
+		 * then starts the next read.
+		 */
+		private class Reader implements CompletionHandler<Integer, Void> {
+			private final ByteBuffer bytes = ByteBuffer.allocateDirect(buffer);
+
+			/** Next byte to read in the current chunk. */
+			private long position;
+
+			/** Byte after the end of the current chunk. */
+			private long end;
+
+			/**
+			 * Claims the next chunk of the file and starts reading it, or
+			 * finishes if there are no chunks left.
+			 */
+			public void claim() {
+				position = next.getAndAdd(buffer);
+
+				if (position >= size) {
+					finished();
+					return;
+				}
+
+				end = Math.min(size, position + buffer);
+				read();
+			}
+
+			/**
+			 * Reads from the current position to the end of the chunk.
+			 */
+			private void read() {
+				bytes.clear();
+				bytes.limit((int) (end - position));
+				channel.read(bytes, position, null, this);
+			}
+
+			@Override
+			public void completed(Integer read, Void attachment) {
+				if (read < 0) {
+					// the file got shorter since we started
+					finished();
+					return;
+				}
+
+				bytes.flip();
+				total.addAndGet(CharacterCounter.countCodeUnits(bytes));
+				position += read;
+
+				// reads may return fewer bytes than asked for, even none at
+				// all, so keep reading until the chunk is done
+				if (position < end) {
+					read();
+				}
+				else {
+					claim();
+				}
+			}
+
+			@Override
+			public void failed(Throwable e, Void attachment) {
+				FileCount.this.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Compares counting the text files with {@link CharacterCounter} one at a
+	 * time, and with this class all at once. Assumes the files pg1661.txt and
+	 * pg2701.txt are located in the "text" subdirectory.
+	 *
+	 * @param args unused
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int warmup = 3;
+		int runs = 5;
+
+		Path[] files = { Paths.get("text", "pg1661.txt"), Paths.get("text", "pg2701.txt") };
+		AsyncCharacterCounter counter = new AsyncCharacterCounter(2);
+
+		for (int i = 0; i < warmup; i++) {
+			for (Path file : files) {
+				CharacterCounter.countCharacters(file);
+			}
+
+			counter.countAll(Arrays.asList(files));
+		}
+
+		long elapsed = 0;
+
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+
+			for (Path file : files) {
+				CharacterCounter.countCharacters(file);
+			}
+
+			elapsed += System.nanoTime() - start;
+		}
+
+		System.out.printf("%.05f seconds average for blocking counts%n", elapsed / 1e9 / runs);
+
+		elapsed = 0;
+		Map<Path, Long> counts = null;
+
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			counts = counter.countAll(Arrays.asList(files));
+			elapsed += System.nanoTime() - start;
+		}
+
+		System.out.printf("%.05f seconds average for asynchronous counts%n", elapsed / 1e9 / runs);
+		System.out.println(counts);
+
+		counter.shutdown();
+	}
+}
@@ -0,0 +1,326 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Remembers the results of {@link CharacterCounter#countCharacters(Path)} so
+ * that unchanged files are not read again. A file is considered unchanged if
+ * its real path, size, last modified time, and file key (such as the inode on
+ * Unix) all match the last time it was counted. Checking these only requires
+ * looking up the file attributes, not reading the file.
+ *
+ * The cache holds at most a fixed number of files, and evicts the least
+ * recently used file when full. It may optionally be saved to and loaded from
+ * a file, so the results survive across runs.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see {@link CharacterCounter}
+ * @see benchmarks.CharacterDriver
+ */
+public class CharacterCache {
+
+	private static final Logger logger = LogManager.getLogger(CharacterCache.class);
+
+	/** Separates the fields of each line when saved to a file. */
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * The identity of a file when it was counted, and how many characters it
+	 * had at that time.
+	 */
+	private static class Entry {
+		private final long size;
+		private final long modified;
+		private final String key;
+		private final int count;
+
+		public Entry(long size, long modified, String key, int count) {
+			this.size = size;
+			this.modified = modified;
+			this.key = key;
+			this.count = count;
+		}
+
+		public Entry(BasicFileAttributes attrs, int count) {
+			this(attrs.size(), attrs.lastModifiedTime().toMillis(),
+					String.valueOf(attrs.fileKey()), count);
+		}
+
+		/**
+		 * @param attrs current attributes of the file
+		 * @return whether the file still looks the same as when it was counted
+		 */
+		public boolean matches(BasicFileAttributes attrs) {
+			return size == attrs.size()
+					&& modified == attrs.lastModifiedTime().toMillis()
+					&& key.equals(String.valueOf(attrs.fileKey()));
+		}
+	}
+
+	/** Maximum number of files to remember. */
+	private final int capacity;
+
+	/** File used to save the cache between runs, or null if not saved. */
+	private final Path store;
+
+	/** Counts by real path, from least to most recently used. */
+	private final LinkedHashMap<String, Entry> entries;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Initializes an empty cache that is not saved between runs.
+	 *
+	 * @param capacity maximum number of files to remember
+	 */
+	public CharacterCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * Initializes a cache that is saved to the specified file. Loads any
+	 * results previously saved to that file.
+	 *
+	 * @param capacity maximum number of files to remember
+	 * @param store file to load from and save to, or null if not saved
+	 */
+	public CharacterCache(int capacity, Path store) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+
+		this.capacity = capacity;
+		this.store = store;
+
+		// access order moves an entry to the end every time it is used
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > CharacterCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+
+				return false;
+			}
+		};
+
+		if (store != null && Files.isReadable(store)) {
+			load();
+		}
+	}
+
+	/**
+	 * Returns the number of characters in a file, only reading the file if it
+	 * has changed since the last time it was counted. Will return -1 if unable
+	 * to count the characters, and failures are not remembered.
+	 *
+	 * @param file file to count
+	 * @return number of characters
+	 */
+	public int countCharacters(Path file) {
+		String path;
+		BasicFileAttributes attrs;
+
+		try {
+			path = file.toRealPath().toString();
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		}
+		catch (IOException e) {
+			logger.debug("Unable to look up {}.", file, e);
+			return -1;
+		}
+
+		synchronized (this) {
+			Entry entry = entries.get(path);
+
+			if (entry != null && entry.matches(attrs)) {
+				hits++;
+				logger.debug("Found {} in cache.", path);
+				return entry.count;
+			}
+
+			misses++;
+		}
+
+		// count without holding the lock, so other files may be looked up
+		int count = CharacterCounter.countCharacters(file);
+
+		if (count >= 0) {
+			synchronized (this) {
+				entries.put(path, new Entry(attrs, count));
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return number of files currently remembered
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return number of lookups answered without reading the file
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to read the file
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of files forgotten to make room for others
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return fraction of lookups answered without reading the file
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Forgets every file and resets the metrics.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Loads the results previously saved to the store. Lines that cannot be
+	 * parsed are skipped.
+	 */
+	private synchronized void load() {
+		try (BufferedReader reader = Files.newBufferedReader(store, StandardCharsets.UTF_8)) {
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+				// the path goes last, since it is the only field that might
+				// contain the separator
+				String[] fields = line.split(SEPARATOR, 5);
+
+				try {
+					entries.put(fields[4], new Entry(Long.parseLong(fields[1]),
+							Long.parseLong(fields[2]), fields[3], Integer.parseInt(fields[0])));
+				}
+				catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					logger.debug("Skipping line: {}", line);
+				}
+			}
+
+			logger.debug("Loaded {} files from {}.", entries.size(), store);
+		}
+		catch (IOException e) {
+			logger.warn("Unable to load cache from {}.", store);
+			logger.debug("Unable to load cache.", e);
+		}
+	}
+
+	/**
+	 * Saves the remembered results to the store, from least to most recently
+	 * used so that the order is kept when loaded again. Does nothing if this
+	 * cache is not saved between runs.
+	 *
+	 * @throws IOException if unable to write the store
+	 */
+	public synchronized void save() throws IOException {
+		if (store == null) {
+			return;
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(store, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> item : entries.entrySet()) {
+				String path = item.getKey();
+				Entry entry = item.getValue();
+
+				// one line per file, so skip the (very rare) paths with newlines
+				if (path.indexOf('\n') >= 0 || path.indexOf('\r') >= 0) {
+					continue;
+				}
+
+				writer.write(entry.count + SEPARATOR + entry.size + SEPARATOR
+						+ entry.modified + SEPARATOR + entry.key + SEPARATOR + path);
+				writer.newLine();
+			}
+		}
+
+		logger.debug("Saved {} files to {}.", entries.size(), store);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d files, %d hits, %d misses, %d evictions (%.0f%% hit rate)",
+				entries.size(), hits, misses, evictions, getHitRate() * 100);
+	}
+
+	/**
+	 * Counts two files several times in a row to show that only the first
+	 * count reads the files. Assumes the files pg1661.txt and pg2701.txt are
+	 * located in the "text" subdirectory.
+	 *
+	 * If a file is given, the cache is saved there and loaded again on the
+	 * next run. Otherwise, the cache is saved to a temporary file that is
+	 * deleted before exiting.
+	 *
+	 * @param args optional file to save the cache to between runs
+	 * @throws IOException if unable to save the cache
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file1 = Paths.get("text", "pg1661.txt");
+		Path file2 = Paths.get("text", "pg2701.txt");
+
+		boolean temporary = args.length == 0;
+		Path store = temporary ? Files.createTempFile("characters", ".cache") : Paths.get(args[0]);
+
+		CharacterCache cache = new CharacterCache(100, store);
+
+		for (int i = 0; i < 5; i++) {
+			long start = System.nanoTime();
+			int count1 = cache.countCharacters(file1);
+			int count2 = cache.countCharacters(file2);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("%d, %d characters in %.05f seconds%n", count1, count2, elapsed / 1e9);
+		}
+
+		System.out.println(cache);
+		cache.save();
+
+		if (temporary) {
+			Files.delete(store);
+		}
+	}
+}
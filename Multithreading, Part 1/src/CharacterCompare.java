@@ -1,4 +1,18 @@
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,12 +28,27 @@ import org.apache.logging.log4j.Logger;
  *
  * @see {@link CharacterCounter}
  * @see {@link CharacterCompare}
- * @see {@link CharacterDriver}
+ * @see benchmarks.CharacterDriver
  */
 public class CharacterCompare {
 
 	private static final Logger logger = LogManager.getLogger(CharacterCompare.class);
 
+	/**
+	 * Pool of threads shared by every call to {@link #rank(Collection, Listener)},
+	 * so we never create a thread per file. Uses daemon threads so the pool
+	 * does not keep the program running.
+	 */
+	private static final ExecutorService pool = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CharacterCompare");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	/**
 	 * Compare two files, returning the difference in the number of characters
 	 * using the {@link CharacterCounter#countCharacters(Path)} method.
@@ -98,4 +127,154 @@ public class CharacterCompare {
 
 		return counter1.count - counter2.count;
 	}
+
+	/**
+	 * The number of characters found in a file.
+	 */
+	public static class FileCount {
+		private final Path file;
+		private final long count;
+
+		public FileCount(Path file, long count) {
+			this.file = file;
+			this.count = count;
+		}
+
+		/**
+		 * @return file that was counted
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * @return number of characters, or -1 if unable to count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return file + ": " + count;
+		}
+	}
+
+	/**
+	 * Receives each count as soon as it is finished. Called one count at a
+	 * time from the thread that called {@link CharacterCompare#rank}, so
+	 * implementations do not need to be thread-safe. The pool keeps counting
+	 * while a listener runs, but a slow listener delays the rest of the
+	 * results and the return of {@code rank}.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a file has been counted.
+		 *
+		 * @param result number of characters found in the file
+		 */
+		public void counted(FileCount result);
+	}
+
+	/** Sorts counts from largest to smallest. */
+	private static final Comparator<FileCount> MOST_FIRST = new Comparator<FileCount>() {
+		@Override
+		public int compare(FileCount one, FileCount two) {
+			return Long.compare(two.getCount(), one.getCount());
+		}
+	};
+
+	/**
+	 * The size of a file in bytes, used to decide which files to start first.
+	 */
+	private static class FileSize {
+		private final Path file;
+		private final long bytes;
+
+		public FileSize(Path file, long bytes) {
+			this.file = file;
+			this.bytes = bytes;
+		}
+	}
+
+	/** Sorts files from largest to smallest. */
+	private static final Comparator<FileSize> LARGEST_FIRST = new Comparator<FileSize>() {
+		@Override
+		public int compare(FileSize one, FileSize two) {
+			return Long.compare(two.bytes, one.bytes);
+		}
+	};
+
+	/**
+	 * Counts the characters in many files at once on a shared pool of threads,
+	 * and returns the files ranked from most to fewest characters. The largest
+	 * files are started first, so a large file does not end up running alone
+	 * at the end. Uses {@link CharacterCounter#countMapped(Path)} for each
+	 * file, so files that cannot be read are counted as -1.
+	 *
+	 * @param files files to count
+	 * @param listener receives each count as soon as it finishes (may be null)
+	 * @return counts sorted from most to fewest characters
+	 * @throws InterruptedException if interrupted while waiting for counts
+	 */
+	public static List<FileCount> rank(Collection<Path> files, Listener listener)
+			throws InterruptedException {
+		logger.debug("Ranking {} files.", files.size());
+
+		// look up every size once, instead of every time we compare two files
+		ArrayList<FileSize> sizes = new ArrayList<>(files.size());
+
+		for (Path file : files) {
+			sizes.add(new FileSize(file, size(file)));
+		}
+
+		Collections.sort(sizes, LARGEST_FIRST);
+
+		CompletionService<FileCount> service = new ExecutorCompletionService<>(pool);
+
+		for (final FileSize size : sizes) {
+			service.submit(new Callable<FileCount>() {
+				@Override
+				public FileCount call() {
+					return new FileCount(size.file, CharacterCounter.countMapped(size.file));
+				}
+			});
+		}
+
+		ArrayList<FileCount> results = new ArrayList<>(sizes.size());
+
+		try {
+			// take each result in the order they finish, not the order started
+			for (int i = 0; i < sizes.size(); i++) {
+				FileCount result = service.take().get();
+				logger.debug("{} has {} characters.", result.getFile(), result.getCount());
+
+				if (listener != null) {
+					listener.counted(result);
+				}
+
+				results.add(result);
+			}
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+
+		Collections.sort(results, MOST_FIRST);
+		return results;
+	}
+
+	/**
+	 * @param file file to check
+	 * @return size of the file in bytes, or -1 if unknown
+	 */
+	private static long size(Path file) {
+		try {
+			return Files.size(file);
+		}
+		catch (IOException e) {
+			return -1;
+		}
+	}
 }
@@ -1,11 +1,25 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 
 /**
@@ -19,7 +33,9 @@ import org.apache.logging.log4j.Logger;
  *
  * @see {@link CharacterCounter}
  * @see {@link CharacterCompare}
- * @see {@link CharacterDriver}
+ * @see benchmarks.CharacterDriver
+ * @see {@link TextStatistics}
+ * @see {@link CharacterHistogram}
  */
 public class CharacterCounter {
 
@@ -31,6 +47,41 @@ public class CharacterCounter {
      */
     private static final int SIZE = 1000;
 
+    /**
+     * Maximum number of bytes to memory-map at once. A single mapping may not
+     * be larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    private static final long SEGMENT = 1L << 30;
+
+    /** The highest bit of every byte in a long. */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** Size of each decompressed block handed from inflating to counting. */
+    private static final int BLOCK = 1 << 16;
+
+    /**
+     * Number of decompressed blocks per file. Inflating may only get this many
+     * blocks ahead of counting before it has to wait.
+     */
+    private static final int BLOCKS = 4;
+
+    /** Marks the end of the decompressed blocks. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** The first two bytes of every gzip file. */
+    private static final int GZIP_MAGIC = 0x1F8B;
+
+    /** Threads that decompress files for {@link #countCompressed(Path)}. */
+    private static final ExecutorService inflaters = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Inflater");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     /**
      * Counts the number of characters in a file. Will return -1 if unable to
      * count the characters. Note that this is a modified version of the class
@@ -41,10 +92,31 @@ public class CharacterCounter {
      * @throws IOException
      */
     public static int countCharacters(Path file) {
+        return countCharacters(file, SIZE);
+    }
+
+    /**
+     * Counts the number of characters in a file, reading the specified number
+     * of characters at a time. Will return -1 if unable to count the
+     * characters.
+     *
+     * @param file
+     * @param size number of characters to read at a time (at least 1)
+     * @return number of characters
+     * @throws IllegalArgumentException if the size is less than 1
+     *
+     * @see #countCharacters(Path)
+     */
+    public static int countCharacters(Path file, int size) {
+        // reading into an empty buffer never reaches the end of the file
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+
         int count = 0;
         int total = 0;
 
-        char[] buffer = new char[SIZE];
+        char[] buffer = new char[size];
 
         try (
             BufferedReader reader =
@@ -52,12 +124,23 @@ public class CharacterCounter {
         ) {
         		logger.debug("Counting characters in file \"{}\".", file);
 
+            // check once instead of every time through the loop; when debug
+            // is off, the loop then creates no garbage at all, and when it is
+            // on, Unbox avoids creating an Integer for every message
+            boolean debug = logger.isDebugEnabled();
+
             while (count >= 0) {
                 total += count;
-                logger.debug("Total number of characters is now {}.", total);
+
+                if (debug) {
+                    logger.debug("Total number of characters is now {}.", Unbox.box(total));
+                }
 
                 count = reader.read(buffer);
-                logger.debug("Read {} characters into buffer.", count);
+
+                if (debug) {
+                    logger.debug("Read {} characters into buffer.", Unbox.box(count));
+                }
             }
 
             // post-condition assert statement
@@ -76,4 +159,487 @@ public class CharacterCounter {
         logger.debug("Found {} characters total.", total);
         return total;
     }
+
+    /**
+     * Counts the number of characters in a UTF-8 file without decoding it.
+     * The file is memory-mapped, and the characters are counted straight from
+     * the bytes. Returns the same count as {@link #countCharacters(Path)} for
+     * valid UTF-8, but is much faster on large files. Will return -1 if unable
+     * to count the characters.
+     *
+     * @param file
+     * @return number of characters (UTF-16 code units)
+     *
+     * @see #countCodeUnits(ByteBuffer)
+     */
+    public static long countMapped(Path file) {
+        long total = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            logger.debug("Counting characters in file \"{}\".", file);
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += SEGMENT) {
+                long length = Math.min(SEGMENT, size - position);
+                total += countCodeUnits(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        } catch (IOException e) {
+            logger.error("Unable to count characters for {}.", file);
+            logger.debug("Unable to count characters.", e);
+            return -1;
+        }
+
+        // post-condition assert statement
+        assert total >= 0;
+
+        logger.debug("Found {} characters total.", total);
+        return total;
+    }
+
+    /**
+     * Counts the number of characters in a UTF-8 file without decoding it,
+     * reading the specified number of bytes at a time. Unlike
+     * {@link #countMapped(Path)}, this reads the file into a buffer instead of
+     * memory-mapping it. Will return -1 if unable to count the characters.
+     *
+     * @param file
+     * @param size number of bytes to read at a time (at least 1)
+     * @return number of characters (UTF-16 code units)
+     * @throws IllegalArgumentException if the size is less than 1
+     *
+     * @see #countCodeUnits(ByteBuffer)
+     */
+    public static long countBuffered(Path file, int size) {
+        // reading into an empty buffer never reaches the end of the file
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            logger.debug("Counting characters in file \"{}\".", file);
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                total += countCodeUnits(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            logger.error("Unable to count characters for {}.", file);
+            logger.debug("Unable to count characters.", e);
+            return -1;
+        }
+
+        // post-condition assert statement
+        assert total >= 0;
+
+        logger.debug("Found {} characters total.", total);
+        return total;
+    }
+
+    /**
+     * Counts the number of characters in a UTF-8 file that may or may not be
+     * compressed with gzip. The first two bytes of the file decide which, so
+     * the file name does not matter. Will return -1 if unable to count the
+     * characters.
+     *
+     * @param file
+     * @return number of characters (UTF-16 code units)
+     *
+     * @see #countMapped(Path)
+     * @see #countCompressed(Path)
+     */
+    public static long count(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            int magic = (in.read() << 8) | in.read();
+
+            if (magic == GZIP_MAGIC) {
+                return countCompressed(file);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to count characters for {}.", file);
+            logger.debug("Unable to count characters.", e);
+            return -1;
+        }
+
+        return countMapped(file);
+    }
+
+    /**
+     * Counts the number of characters in a gzip-compressed UTF-8 file without
+     * writing the decompressed file anywhere. One thread decompresses the file
+     * into blocks, and hands each block to the calling thread to count through
+     * a small bounded queue. This way counting one block overlaps with
+     * decompressing the next. The blocks are handed back once counted and
+     * reused, so the amount of memory used does not depend on the file size.
+     * Will return -1 if unable to count the characters.
+     *
+     * @param file
+     * @return number of characters (UTF-16 code units)
+     */
+    public static long countCompressed(final Path file) {
+        logger.debug("Counting characters in compressed file \"{}\".", file);
+
+        // the extra slot makes sure the inflater never waits to add END
+        final ArrayBlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BLOCKS + 1);
+        final ArrayBlockingQueue<ByteBuffer> empty = new ArrayBlockingQueue<>(BLOCKS);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        for (int i = 0; i < BLOCKS; i++) {
+            empty.add(ByteBuffer.allocate(BLOCK));
+        }
+
+        Future<?> inflater = inflaters.submit(new Runnable() {
+            @Override
+            public void run() {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BLOCK)) {
+                    while (true) {
+                        ByteBuffer block = empty.take();
+                        int read = fill(in, block.array());
+
+                        if (read == 0) {
+                            break;
+                        }
+
+                        block.clear();
+                        block.limit(read);
+                        full.put(block);
+                    }
+                } catch (IOException | RuntimeException | Error e) {
+                    // hand any failure to the counting thread, which would
+                    // otherwise count a partial file without knowing it
+                    error.set(e);
+                } catch (InterruptedException e) {
+                    // counting gave up, so nobody is waiting for the rest
+                } finally {
+                    // always end the queue, or the counting thread waits forever
+                    full.add(END);
+                }
+            }
+        });
+
+        long total = 0;
+
+        try {
+            ByteBuffer block = null;
+
+            while ((block = full.take()) != END) {
+                total += countCodeUnits(block);
+                empty.add(block);
+            }
+        } catch (InterruptedException e) {
+            inflater.cancel(true);
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while counting characters for {}.", file);
+            return -1;
+        }
+
+        if (error.get() != null) {
+            logger.error("Unable to count characters for {}.", file);
+            logger.debug("Unable to count characters.", error.get());
+            return -1;
+        }
+
+        // post-condition assert statement
+        assert total >= 0;
+
+        logger.debug("Found {} characters total.", total);
+        return total;
+    }
+
+    /**
+     * Reads from a stream until the array is full or the stream ends.
+     *
+     * @param in stream to read from
+     * @param array array to fill
+     * @return number of bytes read, which is only less than the length of the
+     * array at the end of the stream
+     * @throws IOException if unable to read the stream
+     */
+    private static int fill(InputStream in, byte[] array) throws IOException {
+        int total = 0;
+        int read = 0;
+
+        while (total < array.length && (read = in.read(array, total, array.length - total)) >= 0) {
+            total += read;
+        }
+
+        return total;
+    }
+
+    /**
+     * Counts the number of characters in a UTF-8 file using multiple threads.
+     * The file is split into one byte range per thread (more if a range would
+     * be too large to map), and each boundary is moved forward to the start
+     * of the next character so no character is split between two ranges. The
+     * ranges are counted on the shared pool from {@link ArrayReducer}, and
+     * the results added together. Will return -1 if unable to count the
+     * characters.
+     *
+     * @param file
+     * @param threads maximum number of threads to use
+     * @return number of characters (UTF-16 code units)
+     *
+     * @see #countMapped(Path)
+     */
+    public static long countParallel(Path file, int threads) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            logger.debug("Counting characters in file \"{}\" with {} threads.", file, threads);
+
+            final long[] boundaries = split(channel, threads);
+
+            long total = ArrayReducer.shared(threads).reduce(boundaries.length - 1, threads,
+                    new ArrayReducer.Reduction<Long>() {
+                @Override
+                public Long reduce(int start, int end) {
+                    long count = 0;
+
+                    for (int i = start; i < end; i++) {
+                        count += countRange(channel, boundaries[i], boundaries[i + 1]);
+                    }
+
+                    return count;
+                }
+
+                @Override
+                public Long combine(Long left, Long right) {
+                    return left + right;
+                }
+            });
+
+            // post-condition assert statement
+            assert total >= 0;
+
+            logger.debug("Found {} characters total.", total);
+            return total;
+        } catch (IOException | UncheckedIOException | InterruptedException e) {
+            logger.error("Unable to count characters for {}.", file);
+            logger.debug("Unable to count characters.", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Counts the lines, words, characters, and bytes in a UTF-8 file in a
+     * single pass, using multiple threads. The file is split the same way as
+     * {@link #countParallel(Path, int)}, each range is counted by
+     * {@link TextStatistics#of(ByteBuffer)}, and the results are combined in
+     * order so words split between two ranges are only counted once. Will
+     * return null if unable to count the file.
+     *
+     * @param file
+     * @param threads maximum number of threads to use
+     * @return lines, words, characters, and bytes in the file
+     */
+    public static TextStatistics countStatistics(Path file, int threads) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            logger.debug("Counting statistics in file \"{}\" with {} threads.", file, threads);
+
+            final long[] boundaries = split(channel, threads);
+
+            TextStatistics total = ArrayReducer.shared(threads).reduce(boundaries.length - 1, threads,
+                    new ArrayReducer.Reduction<TextStatistics>() {
+                @Override
+                public TextStatistics reduce(int start, int end) {
+                    TextStatistics statistics = TextStatistics.EMPTY;
+
+                    for (int i = start; i < end; i++) {
+                        statistics = statistics.combine(
+                                statisticsRange(channel, boundaries[i], boundaries[i + 1]));
+                    }
+
+                    return statistics;
+                }
+
+                @Override
+                public TextStatistics combine(TextStatistics left, TextStatistics right) {
+                    return left.combine(right);
+                }
+            });
+
+            logger.debug("Found {} total.", total);
+            return total;
+        } catch (IOException | UncheckedIOException | InterruptedException e) {
+            logger.error("Unable to count statistics for {}.", file);
+            logger.debug("Unable to count statistics.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Counts how many times each character appears in a UTF-8 file, using
+     * multiple threads. The file is split the same way as
+     * {@link #countParallel(Path, int)}, each range is counted into its own
+     * {@link CharacterHistogram}, and then the histograms are merged. Will
+     * return null if unable to count the file.
+     *
+     * @param file
+     * @param threads maximum number of threads to use
+     * @return number of times each character appears in the file
+     */
+    public static CharacterHistogram countHistogram(Path file, int threads) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            logger.debug("Counting histogram of file \"{}\" with {} threads.", file, threads);
+
+            final long[] boundaries = split(channel, threads);
+
+            return ArrayReducer.shared(threads).reduce(boundaries.length - 1, threads,
+                    new ArrayReducer.Reduction<CharacterHistogram>() {
+                @Override
+                public CharacterHistogram reduce(int start, int end) {
+                    CharacterHistogram histogram = new CharacterHistogram();
+
+                    for (int i = start; i < end; i++) {
+                        histogram.count(map(channel, boundaries[i], boundaries[i + 1]));
+                    }
+
+                    return histogram;
+                }
+
+                @Override
+                public CharacterHistogram combine(CharacterHistogram left, CharacterHistogram right) {
+                    return left.add(right);
+                }
+            });
+        } catch (IOException | UncheckedIOException | InterruptedException e) {
+            logger.error("Unable to count histogram for {}.", file);
+            logger.debug("Unable to count histogram.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Splits a file into byte ranges that each start at the beginning of a
+     * UTF-8 character. There will be at least one range per thread, unless the
+     * file is too small, and no range will be larger than {@link #SEGMENT}.
+     *
+     * @param channel open channel to the file
+     * @param threads number of threads that will count the ranges
+     * @return boundaries of the ranges, where range {@code i} goes from
+     * {@code boundaries[i]} (inclusive) to {@code boundaries[i + 1]} (exclusive)
+     * @throws IOException if unable to read the file
+     */
+    private static long[] split(FileChannel channel, int threads) throws IOException {
+        long size = channel.size();
+        long ranges = Math.max(Math.max(1, threads), (size + SEGMENT - 1) / SEGMENT);
+        ranges = Math.max(1, Math.min(ranges, size));
+
+        long[] boundaries = new long[(int) ranges + 1];
+        ByteBuffer peek = ByteBuffer.allocate(4);
+
+        for (int i = 1; i < ranges; i++) {
+            long boundary = Math.max(boundaries[i - 1], size / ranges * i);
+
+            // a character is at most 4 bytes, so we need to look ahead at most 3
+            peek.clear();
+            channel.read(peek, boundary);
+
+            for (int j = 0; j < peek.position() && (peek.get(j) & 0xC0) == 0x80; j++) {
+                boundary++;
+            }
+
+            boundaries[i] = boundary;
+        }
+
+        boundaries[(int) ranges] = size;
+        return boundaries;
+    }
+
+    /**
+     * Counts the characters in part of a UTF-8 file by memory-mapping that
+     * part of the file.
+     *
+     * @param channel open channel to the file
+     * @param start first byte to count
+     * @param end byte after the last to count
+     * @return number of characters (UTF-16 code units)
+     * @throws UncheckedIOException if unable to read the file
+     */
+    private static long countRange(FileChannel channel, long start, long end) {
+        return countCodeUnits(map(channel, start, end));
+    }
+
+    /**
+     * Counts the statistics of part of a UTF-8 file by memory-mapping that
+     * part of the file.
+     *
+     * @param channel open channel to the file
+     * @param start first byte to count
+     * @param end byte after the last to count
+     * @return lines, words, characters, and bytes in that part of the file
+     * @throws UncheckedIOException if unable to read the file
+     */
+    private static TextStatistics statisticsRange(FileChannel channel, long start, long end) {
+        return TextStatistics.of(map(channel, start, end));
+    }
+
+    /**
+     * Memory-maps part of a file.
+     *
+     * @param channel open channel to the file
+     * @param start first byte to map
+     * @param end byte after the last to map
+     * @return that part of the file
+     * @throws UncheckedIOException if unable to read the file
+     */
+    private static ByteBuffer map(FileChannel channel, long start, long end) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Counts how many UTF-16 code units (Java chars) the UTF-8 bytes from the
+     * buffer's position to its limit decode to. Every character starts with
+     * exactly one byte that is not a continuation byte (10xxxxxx), so we count
+     * those. Characters outside of the Basic Multilingual Plane start with a
+     * 4-byte lead byte (11110xxx) and need two chars (a surrogate pair), so we
+     * count those bytes twice.
+     *
+     * Checks 8 bytes at a time by loading them as a single long, and using
+     * bit operations to test every byte at once.
+     *
+     * @param bytes UTF-8 encoded bytes
+     * @return number of UTF-16 code units
+     */
+    public static long countCodeUnits(ByteBuffer bytes) {
+        // byte order does not matter since every byte is tested the same way,
+        // so use whichever order is fastest to load
+        bytes = bytes.duplicate().order(ByteOrder.nativeOrder());
+
+        long count = 0;
+        int i = bytes.position();
+        int limit = bytes.limit();
+
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long x = bytes.getLong(i);
+
+            // high bit set, but second highest bit not set: 10xxxxxx
+            long continuation = x & ~(x << 1) & HIGH_BITS;
+
+            // four highest bits set, but fifth highest bit not set: 11110xxx
+            long lead = x & (x << 1) & (x << 2) & (x << 3) & ~(x << 4) & HIGH_BITS;
+
+            count += Long.BYTES - Long.bitCount(continuation) + Long.bitCount(lead);
+        }
+
+        // handle the remaining bytes one at a time
+        for (; i < limit; i++) {
+            byte b = bytes.get(i);
+
+            if ((b & 0xC0) != 0x80) {
+                count++;
+            }
+
+            if ((b & 0xF8) == 0xF0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
 }
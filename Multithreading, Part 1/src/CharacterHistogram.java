@@ -0,0 +1,374 @@
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Counts how many times each character (Unicode code point) appears in UTF-8
+ * text. Characters in the Basic Multilingual Plane are counted in a plain
+ * array indexed by code point. The much rarer supplementary characters (such
+ * as emoji) are counted in a small open-addressing hash table made of two
+ * primitive arrays, so counting a character never creates an object.
+ *
+ * Each thread should count into its own histogram, which are then merged with
+ * {@link #add(CharacterHistogram)}. Not thread-safe.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see {@link CharacterCounter#countHistogram(Path, int)}
+ */
+public class CharacterHistogram {
+
+	/** Number of code points in the Basic Multilingual Plane. */
+	private static final int BMP = 1 << 16;
+
+	/** Counted in place of malformed UTF-8. */
+	private static final int REPLACEMENT = 0xFFFD;
+
+	/** Initial capacity of the supplementary table. Must be a power of 2. */
+	private static final int INITIAL = 16;
+
+	/** Counts of the Basic Multilingual Plane, indexed by code point. */
+	private final long[] counts;
+
+	/**
+	 * Supplementary code points in the table, or 0 for an empty slot (which is
+	 * safe since 0 is never a supplementary code point).
+	 */
+	private int[] keys;
+
+	/** Counts of the supplementary code points in {@link #keys}. */
+	private long[] values;
+
+	/** Number of supplementary code points in the table. */
+	private int size;
+
+	/**
+	 * Initializes an empty histogram.
+	 */
+	public CharacterHistogram() {
+		counts = new long[BMP];
+		keys = new int[INITIAL];
+		values = new long[INITIAL];
+		size = 0;
+	}
+
+	/**
+	 * Decodes the UTF-8 bytes from the buffer's position to its limit, and
+	 * counts every code point. Malformed input, including overlong encodings
+	 * and surrogates, is counted as U+FFFD as many times as
+	 * {@link java.nio.charset.StandardCharsets#UTF_8} would replace it. Does
+	 * not change the position of the buffer.
+	 *
+	 * @param bytes UTF-8 encoded bytes
+	 */
+	public void count(ByteBuffer bytes) {
+		int i = bytes.position();
+		int limit = bytes.limit();
+
+		while (i < limit) {
+			int b = bytes.get(i) & 0xFF;
+
+			// most text is ASCII, so check that first
+			if (b < 0x80) {
+				counts[b]++;
+				i++;
+				continue;
+			}
+
+			int length;
+			int point;
+
+			// range of the second byte, narrowed after some lead bytes to
+			// reject overlong encodings and code points past U+10FFFF
+			int low = 0x80;
+			int high = 0xBF;
+
+			if (b >= 0xC2 && b <= 0xDF) {
+				length = 2;
+				point = b & 0x1F;
+			}
+			else if (b >= 0xE0 && b <= 0xEF) {
+				length = 3;
+				point = b & 0x0F;
+
+				if (b == 0xE0) {
+					low = 0xA0;
+				}
+			}
+			else if (b >= 0xF0 && b <= 0xF4) {
+				length = 4;
+				point = b & 0x07;
+
+				if (b == 0xF0) {
+					low = 0x90;
+				}
+				else if (b == 0xF4) {
+					high = 0x8F;
+				}
+			}
+			else {
+				counts[REPLACEMENT]++;
+				i++;
+				continue;
+			}
+
+			int j = 1;
+
+			while (j < length && i + j < limit) {
+				int next = bytes.get(i + j) & 0xFF;
+
+				if (next < low || next > high) {
+					break;
+				}
+
+				point = (point << 6) | (next & 0x3F);
+				low = 0x80;
+				high = 0xBF;
+				j++;
+			}
+
+			// the valid start of a broken sequence counts as one U+FFFD, and
+			// decoding starts over at the byte that broke it
+			if (j < length) {
+				counts[REPLACEMENT]++;
+				i += j;
+				continue;
+			}
+
+			// a complete surrogate is replaced as a whole, like the JDK does
+			if (point >= Character.MIN_SURROGATE && point <= Character.MAX_SURROGATE) {
+				point = REPLACEMENT;
+			}
+
+			add(point, 1);
+			i += length;
+		}
+	}
+
+	/**
+	 * Adds to the count of a code point.
+	 *
+	 * @param point code point to add to
+	 * @param amount amount to add
+	 */
+	private void add(int point, long amount) {
+		if (point < BMP) {
+			counts[point] += amount;
+			return;
+		}
+
+		int slot = find(keys, point);
+
+		if (keys[slot] == 0) {
+			keys[slot] = point;
+			size++;
+		}
+
+		values[slot] += amount;
+
+		// keep the table at most half full so probes stay short
+		if (size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * Finds the slot of a code point using linear probing.
+	 *
+	 * @param keys table to search
+	 * @param point code point to find
+	 * @return slot holding the code point, or the empty slot where it belongs
+	 */
+	private static int find(int[] keys, int point) {
+		int mask = keys.length - 1;
+		int slot = (point * 0x9E3779B9) >>> 16 & mask;
+
+		while (keys[slot] != 0 && keys[slot] != point) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the supplementary table. This is the only time
+	 * counting allocates memory, and only happens a handful of times.
+	 */
+	private void grow() {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+
+		keys = new int[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = find(keys, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds all of the counts from another histogram into this one.
+	 *
+	 * @param other histogram to add
+	 * @return this histogram, for chaining
+	 */
+	public CharacterHistogram add(CharacterHistogram other) {
+		for (int i = 0; i < BMP; i++) {
+			counts[i] += other.counts[i];
+		}
+
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != 0) {
+				add(other.keys[i], other.values[i]);
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * @param point code point to look up
+	 * @return number of times the code point was counted
+	 */
+	public long getCount(int point) {
+		if (point < BMP) {
+			return point < 0 ? 0 : counts[point];
+		}
+
+		int slot = find(keys, point);
+		return keys[slot] == 0 ? 0 : values[slot];
+	}
+
+	/**
+	 * @return number of different code points counted
+	 */
+	public int getDistinct() {
+		int distinct = size;
+
+		for (int i = 0; i < BMP; i++) {
+			if (counts[i] > 0) {
+				distinct++;
+			}
+		}
+
+		return distinct;
+	}
+
+	/**
+	 * @return total number of code points counted
+	 */
+	public long getTotal() {
+		long total = 0;
+
+		for (int i = 0; i < BMP; i++) {
+			total += counts[i];
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+			total += values[i];
+		}
+
+		return total;
+	}
+
+	/**
+	 * Returns the most common code points, from most to least common. Ties
+	 * are broken by the smaller code point first.
+	 *
+	 * @param n maximum number of code points to return
+	 * @return up to {@code n} code points
+	 */
+	public int[] top(int n) {
+		// pack count and code point into one long so a plain sort works;
+		// code points only need 21 bits, and the count is negated so larger
+		// counts sort first
+		long[] packed = new long[getDistinct()];
+		int next = 0;
+
+		for (int i = 0; i < BMP; i++) {
+			if (counts[i] > 0) {
+				packed[next++] = pack(counts[i], i);
+			}
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				packed[next++] = pack(values[i], keys[i]);
+			}
+		}
+
+		Arrays.sort(packed);
+
+		int[] top = new int[Math.min(n, packed.length)];
+
+		for (int i = 0; i < top.length; i++) {
+			top[i] = (int) (packed[i] & 0x1FFFFF);
+		}
+
+		return top;
+	}
+
+	/**
+	 * @param count count of the code point (less than 2^42)
+	 * @param point code point
+	 * @return value that sorts by count descending, then by code point
+	 */
+	private static long pack(long count, int point) {
+		return (-count << 21) | point;
+	}
+
+	/**
+	 * Formats the most common code points, one per line.
+	 *
+	 * @param n maximum number of code points to include
+	 * @return the most common code points and their counts
+	 */
+	public String toString(int n) {
+		StringBuilder builder = new StringBuilder();
+
+		for (int point : top(n)) {
+			String character = Character.isISOControl(point) || Character.isWhitespace(point) ?
+					String.format("U+%04X", point) : new String(Character.toChars(point));
+
+			builder.append(String.format("%-8s %d%n", character, getCount(point)));
+		}
+
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toString(10);
+	}
+
+	/**
+	 * Outputs the 20 most common characters in the text files. Assumes the
+	 * files pg1661.txt and pg2701.txt are located in the "text" subdirectory.
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		for (String name : new String[] { "pg1661.txt", "pg2701.txt" }) {
+			CharacterHistogram histogram = CharacterCounter.countHistogram(Paths.get("text", name), threads);
+
+			if (histogram == null) {
+				System.err.println("Unable to count " + name);
+				continue;
+			}
+
+			System.out.printf("%s: %d characters, %d distinct%n",
+					name, histogram.getTotal(), histogram.getDistinct());
+			System.out.println(histogram.toString(20));
+		}
+	}
+}
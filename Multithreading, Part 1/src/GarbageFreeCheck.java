@@ -0,0 +1,145 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Checks that the loop inside {@link CharacterCounter#countCharacters(Path)}
+ * does not create any garbage when debug messages are turned off. Uses the
+ * number of bytes allocated by the current thread, which is tracked by the
+ * HotSpot virtual machine.
+ *
+ * Counting a file always allocates some memory up front (the reader and its
+ * buffers), so we count two files of different sizes. The extra memory used
+ * by the larger file divided by the extra times through the loop is the
+ * memory used per loop. The reader itself may also create a little garbage
+ * every time it reads from the file, so the same loop without any logging
+ * is measured too. The difference between the two is the garbage created by
+ * logging, which should be 0.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see {@link CharacterCounter}
+ */
+public class GarbageFreeCheck {
+
+	/** Number of times to count before measuring, so the code is compiled. */
+	private static final int WARMUP = 50;
+
+	/** Number of times to measure. The smallest measurement is used. */
+	private static final int RUNS = 10;
+
+	/** Number of characters read each time through the loop. */
+	private static final int SIZE = 1000;
+
+	/**
+	 * @return bytes allocated by the current thread so far
+	 */
+	private static long allocated() {
+		com.sun.management.ThreadMXBean bean =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The same loop as {@link CharacterCounter#countCharacters(Path, int)}
+	 * without any logging.
+	 *
+	 * @param file file to count
+	 * @return number of characters
+	 */
+	private static int countPlain(Path file) {
+		int count = 0;
+		int total = 0;
+
+		char[] buffer = new char[SIZE];
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			while (count >= 0) {
+				total += count;
+				count = reader.read(buffer);
+			}
+		}
+		catch (IOException e) {
+			return -1;
+		}
+
+		return total;
+	}
+
+	/**
+	 * @param file file to count
+	 * @param logging whether to count with or without logging
+	 * @return fewest bytes allocated to count the file
+	 */
+	private static long measure(Path file, boolean logging) {
+		long fewest = Long.MAX_VALUE;
+
+		for (int i = 0; i < RUNS; i++) {
+			long before = allocated();
+
+			if (logging) {
+				CharacterCounter.countCharacters(file, SIZE);
+			}
+			else {
+				countPlain(file);
+			}
+
+			fewest = Math.min(fewest, allocated() - before);
+		}
+
+		return fewest;
+	}
+
+	/**
+	 * @param file file to count
+	 * @return number of times through the loop to count the file
+	 */
+	private static long loops(Path file) {
+		// one extra loop to find the end of the file
+		return (CharacterCounter.countCharacters(file, SIZE) + SIZE - 1) / SIZE + 1;
+	}
+
+	/**
+	 * Turns off debug messages, and outputs the bytes allocated per loop.
+	 * Assumes the files pg1661.txt and pg2701.txt are located in the "text"
+	 * subdirectory.
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		Configurator.setRootLevel(Level.INFO);
+
+		Path small = Paths.get("text", "pg1661.txt");
+		Path large = Paths.get("text", "pg2701.txt");
+
+		for (int i = 0; i < WARMUP; i++) {
+			CharacterCounter.countCharacters(small, SIZE);
+			CharacterCounter.countCharacters(large, SIZE);
+			countPlain(small);
+			countPlain(large);
+		}
+
+		long loops = loops(large) - loops(small);
+		double logged = (double) (measure(large, true) - measure(small, true)) / loops;
+		double plain = (double) (measure(large, false) - measure(small, false)) / loops;
+
+		System.out.printf("%.3f bytes per loop with logging%n", logged);
+		System.out.printf("%.3f bytes per loop without logging%n", plain);
+		System.out.printf("%.3f bytes per loop from logging%n", logged - plain);
+
+		// allow for a few stray bytes, such as from the compiler
+		System.out.println(logged - plain < 1 ? "PASS: logging creates no garbage"
+				: "FAIL: logging creates garbage");
+	}
+}
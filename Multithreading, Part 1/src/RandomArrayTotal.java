@@ -1,5 +1,15 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Demonstrates basic multithreading, and illustrates how to break up a problem
@@ -13,6 +23,72 @@ import java.util.Random;
  */
 public class RandomArrayTotal {
 
+	/**
+	 * Number of values generated from each random stream when filling arrays
+	 * in parallel. Does not depend on the number of threads, which is what
+	 * makes the results repeatable.
+	 */
+	public static final int BLOCK = 1 << 16;
+
+	/**
+	 * Maximum number of bytes to memory-map at once when totaling a file.
+	 * A single mapping may not be larger than {@link Integer#MAX_VALUE}.
+	 */
+	public static final long SEGMENT = 1L << 30;
+
+	/**
+	 * Calculates subtotals of an array. Allows a faster implementation to be
+	 * swapped in for {@link RandomArrayTotal#subtotal(int[], int, int)} when
+	 * one is available.
+	 */
+	public interface Kernel {
+
+		/**
+		 * Calculates a subtotal in an array.
+		 *
+		 * @param numbers array of numbers to subtotal
+		 * @param start index of array to start subtotal
+		 * @param chunk number of values to subtotal
+		 * @return subtotal of numbers from index {@code start} (inclusive) to
+		 * {@code start + chunk} (exclusive)
+		 */
+		public long subtotal(int[] numbers, int start, int chunk);
+	}
+
+	/**
+	 * Fastest available subtotal implementation. Uses {@code VectorSubtotal}
+	 * (from the {@code vector} source folder) if it was compiled and the
+	 * {@code jdk.incubator.vector} module is available, and the scalar
+	 * {@link #subtotal(int[], int, int)} method otherwise.
+	 */
+	private static final Kernel KERNEL = kernel();
+
+	/**
+	 * Returns the fastest available subtotal implementation. The vector
+	 * version is loaded by name, so this class still works if the vector
+	 * module is missing or {@code VectorSubtotal} was not compiled.
+	 *
+	 * @return subtotal implementation
+	 */
+	private static Kernel kernel() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				return (Kernel) Class.forName("VectorSubtotal")
+						.getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException | LinkageError e) {
+				// fall back to the scalar version below
+			}
+		}
+
+		return new Kernel() {
+			@Override
+			public long subtotal(int[] numbers, int start, int chunk) {
+				return RandomArrayTotal.subtotal(numbers, start, chunk);
+			}
+		};
+	}
+
 	/**
 	 * Fills an integer array with random integers between 0 and {@code max}.
 	 *
@@ -27,6 +103,96 @@ public class RandomArrayTotal {
 		}
 	}
 
+	/**
+	 * Fills an integer array with random integers between 0 and {@code max}
+	 * using multiple threads. The array is split into blocks of {@link #BLOCK}
+	 * values, and each block gets its own {@link SplittableRandom} seeded from
+	 * the provided seed and the block number (see {@link #blockSeed(long, int)}).
+	 * As a result, the same seed always produces the same array, no matter how
+	 * many threads are used. The work is split on block boundaries, so every
+	 * block is filled by exactly one thread.
+	 *
+	 * @param numbers array to fill with random integers
+	 * @param max maximum (positive) integer
+	 * @param seed seed for the random numbers
+	 * @param threads maximum number of threads to use
+	 * @throws InterruptedException
+	 */
+	public static void fillRandom(final int[] numbers, final int max, final long seed,
+			int threads) throws InterruptedException {
+		ArrayReducer reducer = ArrayReducer.shared(threads);
+		int blocks = (int) ((numbers.length + (long) BLOCK - 1) / BLOCK);
+
+		reducer.reduce(blocks, reducer.chunks(numbers.length), new ArrayReducer.Reduction<Void>() {
+			@Override
+			public Void reduce(int start, int end) {
+				fillBlocks(numbers, max, seed, start, end);
+				return null;
+			}
+
+			@Override
+			public Void combine(Void left, Void right) {
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Fills whole blocks of an array. Only the last block of the array may be
+	 * shorter than {@link #BLOCK}.
+	 *
+	 * @param numbers array to fill with random integers
+	 * @param max maximum (positive) integer
+	 * @param seed seed for the random numbers
+	 * @param first first block to fill
+	 * @param last block after the last to fill
+	 */
+	private static void fillBlocks(int[] numbers, int max, long seed, int first, int last) {
+		for (int block = first; block < last; block++) {
+			// the end of the last block may be past Integer.MAX_VALUE
+			int start = block * BLOCK;
+			int end = (int) Math.min(numbers.length, (block + 1L) * BLOCK);
+
+			SplittableRandom random = new SplittableRandom(blockSeed(seed, block));
+
+			for (int i = start; i < end; i++) {
+				numbers[i] = random.nextInt(max);
+			}
+		}
+	}
+
+	/**
+	 * Returns the seed for one block of random numbers. Simply adding a
+	 * multiple of the block number to the seed is not enough, since
+	 * {@link SplittableRandom} itself steps its seed by a fixed amount for
+	 * every value. Neighboring blocks would then produce the same values,
+	 * only shifted over by one. Instead, the seed and block number are
+	 * scrambled together with the MurmurHash3 finalizer, so every block gets
+	 * an unrelated seed.
+	 *
+	 * @param seed seed for the whole array
+	 * @param block block number
+	 * @return seed for the block
+	 */
+	private static long blockSeed(long seed, int block) {
+		long z = mix(seed) ^ block;
+
+		return mix(z);
+	}
+
+	/**
+	 * Scrambles the bits of a value with the MurmurHash3 finalizer, so that
+	 * values that differ by a single bit end up completely different.
+	 *
+	 * @param z value to scramble
+	 * @return scrambled value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+
 	/**
 	 * Calculates a subtotal in an array. Does no validation of parameters,
 	 * so results will vary when invalid indices are provided.
@@ -47,6 +213,23 @@ public class RandomArrayTotal {
 		return total;
 	}
 
+	/**
+	 * Calculates a subtotal in an array using the fastest available
+	 * implementation, which may use SIMD instructions. Results are identical
+	 * to {@link #subtotal(int[], int, int)}.
+	 *
+	 * @param numbers array of numbers to subtotal
+	 * @param start index of array to start subtotal
+	 * @param chunk number of values to subtotal
+	 * @return subtotal of numbers from index {@code start} (inclusive) to
+	 * {@code start + chunk} (exclusive)
+	 *
+	 * @see Kernel
+	 */
+	public static long fastSubtotal(int[] numbers, int start, int chunk) {
+		return KERNEL.subtotal(numbers, start, chunk);
+	}
+
 	/**
 	 * Calculates total of values in an array.
 	 *
@@ -57,6 +240,130 @@ public class RandomArrayTotal {
 		return subtotal(numbers, 0, numbers.length);
 	}
 
+	/**
+	 * Calculates the total of an array using multithreading. Reuses a pool of
+	 * threads between calls instead of creating new ones every time, and falls
+	 * back to a sequential total for small arrays.
+	 *
+	 * @param numbers array of numbers to total
+	 * @param threads maximum number of threads to use
+	 * @return total of numbers in array
+	 * @throws InterruptedException
+	 *
+	 * @see ArrayReducer
+	 */
+	public static long total(int[] numbers, int threads) throws InterruptedException {
+		return ArrayReducer.shared(threads).sum(numbers);
+	}
+
+	/**
+	 * Calculates the total of a binary file of little-endian integers using
+	 * multithreading. The file is split into segments of at most
+	 * {@link #SEGMENT} bytes, and each segment is memory-mapped and totaled
+	 * directly from the mapped buffer. Nothing is copied onto the heap, so the
+	 * file may be much larger than the available memory. Any bytes at the end
+	 * of the file that do not make up a full integer are ignored.
+	 *
+	 * @param file file of little-endian integers to total
+	 * @param threads maximum number of threads to use
+	 * @return total of the integers in the file
+	 * @throws IOException if unable to read the file
+	 * @throws InterruptedException
+	 */
+	public static long total(Path file, int threads) throws IOException, InterruptedException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long count = channel.size() / Integer.BYTES;
+
+			if (count == 0) {
+				return 0;
+			}
+
+			// use at least one segment per thread, but keep each one mappable
+			long per = Math.max(1, (count + threads - 1) / Math.max(1, threads));
+			final long segment = Math.min(SEGMENT / Integer.BYTES, per);
+			int segments = (int) ((count + segment - 1) / segment);
+
+			return ArrayReducer.shared(threads).reduce(segments, threads, new ArrayReducer.Reduction<Long>() {
+				@Override
+				public Long reduce(int start, int end) {
+					long total = 0;
+
+					for (int i = start; i < end; i++) {
+						long first = i * segment;
+						long length = Math.min(segment, count - first);
+						total += subtotal(channel, first, (int) length);
+					}
+
+					return total;
+				}
+
+				@Override
+				public Long combine(Long left, Long right) {
+					return left + right;
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Calculates a subtotal of a file of little-endian integers by mapping
+	 * that part of the file into memory.
+	 *
+	 * @param channel open channel to the file
+	 * @param start index of the first integer to subtotal
+	 * @param chunk number of integers to subtotal
+	 * @return subtotal of the integers
+	 */
+	private static long subtotal(FileChannel channel, long start, int chunk) {
+		try {
+			IntBuffer numbers = channel
+					.map(FileChannel.MapMode.READ_ONLY, start * Integer.BYTES, (long) chunk * Integer.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN)
+					.asIntBuffer();
+
+			long total = 0;
+
+			for (int i = 0; i < chunk; i++) {
+				total = total + numbers.get(i);
+			}
+
+			return total;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes an array to a binary file of little-endian integers, which can
+	 * then be totaled using {@link #total(Path, int)}.
+	 *
+	 * @param numbers array of numbers to write
+	 * @param file file to write to
+	 * @throws IOException if unable to write the file
+	 */
+	public static void write(int[] numbers, Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (int i = 0; i < numbers.length; i += BLOCK) {
+				int length = Math.min(BLOCK, numbers.length - i);
+
+				buffer.clear();
+				buffer.asIntBuffer().put(numbers, i, length);
+				buffer.limit(length * Integer.BYTES);
+
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Calculates the total of an array using multithreading. Used to demonstrate
 	 * the cost of creating/destorying thread objects versus using a work queue.
@@ -65,8 +372,10 @@ public class RandomArrayTotal {
 	 * @param threads number of threads to create
 	 * @return total of numbers in array
 	 * @throws InterruptedException
+	 *
+	 * @see #total(int[], int)
 	 */
-	public static long total(int[] numbers, int threads) throws InterruptedException {
+	public static long totalWithThreads(int[] numbers, int threads) throws InterruptedException {
 		// make sure do not have more threads than numbers
 		threads = threads > numbers.length ? numbers.length : threads;
 		threads = threads < 1 ? 1 : threads;
@@ -128,12 +437,23 @@ public class RandomArrayTotal {
 		}
 	}
 
-	public static void main(String[] args) throws InterruptedException {
+	public static void main(String[] args) throws InterruptedException, IOException {
 		int[] numbers = new int[5];
 		fillRandom(numbers, 10);
 
 		System.out.println(Arrays.toString(numbers));
 		System.out.println(total(numbers));
 		System.out.println(total(numbers, 5));
+		System.out.println(totalWithThreads(numbers, 5));
+
+		Path file = Files.createTempFile("numbers", ".bin");
+
+		try {
+			write(numbers, file);
+			System.out.println(total(file, 5));
+		}
+		finally {
+			Files.delete(file);
+		}
 	}
 }
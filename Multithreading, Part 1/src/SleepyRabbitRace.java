@@ -1,9 +1,16 @@
 import java.util.Random;
+import java.util.TreeMap;
 
 /**
  * This class demonstrates very basic multithreading and synchronization. It
  * does not do any significant exception handling to simplify the code.
  *
+ * The race may also be simulated with a {@link VirtualClock} and a fixed
+ * random seed, so the rabbits do not actually sleep and the same seed always
+ * gives the same race. This makes it possible to run thousands of races (a
+ * few hundred per second, since every race starts three new threads) to
+ * check that the winner is always detected correctly.
+ *
  * <p><em>
  * Note that this class is designed to illustrate a specific concept, and
  * may not be an example of proper class design outside of this context.
@@ -14,9 +21,58 @@ public class SleepyRabbitRace {
 	private final Random random;
 	private boolean done;
 
+	/** Used instead of real sleeping when simulating, otherwise null. */
+	private final VirtualClock clock;
+
+	/** Name of the first rabbit to finish. */
+	private String winner;
+
+	/** Final counts of each rabbit, set once the race is finished. */
+	private int[] counts;
+
 	public SleepyRabbitRace() {
 		this.random = new Random(System.currentTimeMillis());
 		this.done = false;
+		this.clock = null;
+	}
+
+	/**
+	 * Sets up a simulated race, where the rabbits sleep using a pretend clock
+	 * instead of real time. The same seed always gives the same race.
+	 *
+	 * @param seed random seed used for how long the rabbits sleep
+	 */
+	public SleepyRabbitRace(long seed) {
+		this.random = new Random(seed);
+		this.done = false;
+		this.clock = new VirtualClock();
+	}
+
+	/**
+	 * Outputs a message using {@link #threadMessage(String)}, unless
+	 * simulating since then there may be thousands of races.
+	 *
+	 * @param message to be output to console
+	 */
+	private void message(String message) {
+		if (clock == null) {
+			threadMessage(message);
+		}
+	}
+
+	/**
+	 * Sleeps for real, or using the pretend clock if simulating.
+	 *
+	 * @param millis how long to sleep in milliseconds
+	 * @throws InterruptedException if interrupted while sleeping
+	 */
+	private void sleep(long millis) throws InterruptedException {
+		if (clock == null) {
+			Thread.sleep(millis);
+		}
+		else {
+			clock.sleep(millis);
+		}
 	}
 
 	/**
@@ -52,9 +108,15 @@ public class SleepyRabbitRace {
 		 */
 		@Override
 		public void run() {
-			threadMessage("Starting race!");
+			message("Starting race!");
 
 			try {
+				// wait for our turn, so the rabbits use the same random
+				// numbers every time when simulating
+				if (clock != null) {
+					clock.begin();
+				}
+
 				while (count < 100) {
 					int sleep = random.nextInt(100);
 
@@ -63,11 +125,11 @@ public class SleepyRabbitRace {
 					 * working properly without overwhelming the console.
 					 */
 					if (count % 20 == 0) {
-						threadMessage("Reached " + count + ". Sleeping for " +
+						message("Reached " + count + ". Sleeping for " +
 								sleep + " milliseconds.");
 					}
 
-					Thread.sleep(sleep);
+					sleep(sleep);
 					count = count + 1;
 				}
 
@@ -96,10 +158,16 @@ public class SleepyRabbitRace {
 				 * If another thread has already won, the remaining threads
 				 * will be interrupted before they reach 100.
 				 */
-				threadMessage("Interrupted while counting.");
+				message("Interrupted while counting.");
+			}
+			finally {
+				// time would stop if the clock kept waiting on this rabbit
+				if (clock != null) {
+					clock.deregister();
+				}
 			}
 
-			threadMessage("Finished! Reached count " + count + ".");
+			message("Finished! Reached count " + count + ".");
 		}
 	}
 
@@ -120,7 +188,15 @@ public class SleepyRabbitRace {
 		Thread thread2 = new Thread(rabbit2, "Rabbit 2");
 		Thread thread3 = new Thread(rabbit3, "Rabbit 3");
 
-		threadMessage("Here we go!");
+		message("Here we go!");
+
+		// the clock must know about every rabbit before any of them run
+		if (clock != null) {
+			clock.register(thread1);
+			clock.register(thread2);
+			clock.register(thread3);
+			clock.start();
+		}
 
 		thread1.start();
 		thread2.start();
@@ -154,11 +230,11 @@ public class SleepyRabbitRace {
 				}
 			}
 			catch (InterruptedException ex) {
-				threadMessage("Race interrupted!");
+				message("Race interrupted!");
 			}
 		}
 
-		threadMessage("Winner detected!");
+		message("Winner detected!");
 
 		/*
 		 * This will make sure any threads that are still running even though
@@ -178,7 +254,31 @@ public class SleepyRabbitRace {
 		thread2.join();
 		thread3.join();
 
-		threadMessage("Race finished.");
+		counts = new int[] { rabbit1.count, rabbit2.count, rabbit3.count };
+		message("Race finished.");
+	}
+
+	/**
+	 * @return name of the first rabbit to finish, or null if the race has not
+	 * finished yet
+	 */
+	public synchronized String getWinner() {
+		return winner;
+	}
+
+	/**
+	 * @return how far each rabbit got, or null if the race has not finished
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * @return pretend time in milliseconds when the race finished, or -1 if
+	 * not simulating
+	 */
+	public long getTime() {
+		return clock == null ? -1 : clock.now();
 	}
 
 	/**
@@ -201,11 +301,84 @@ public class SleepyRabbitRace {
 	 * worker threads when a rabbit hits 100.
 	 */
 	private synchronized void setDone() {
+		// only the first rabbit to finish is the winner
+		if (!this.done) {
+			this.winner = Thread.currentThread().getName();
+		}
+
+		// freeze the pretend clock so the other rabbits stop where they are
+		if (clock != null) {
+			clock.stop();
+		}
+
 		this.done = true;
 		this.notifyAll(); // add later once wait() is setup properly
 	}
 
+	/**
+	 * Simulates many races with the seeds 0, 1, 2, and so on, and checks that
+	 * every race has exactly one rabbit reach 100 and that rabbit is the
+	 * winner. Outputs how many times each rabbit won.
+	 *
+	 * @param races number of races to simulate
+	 * @throws InterruptedException if interrupted while racing
+	 */
+	public static void simulate(int races) throws InterruptedException {
+		TreeMap<String, Integer> wins = new TreeMap<>();
+		int problems = 0;
+
+		long start = System.nanoTime();
+
+		for (int seed = 0; seed < races; seed++) {
+			SleepyRabbitRace race = new SleepyRabbitRace(seed);
+			race.race();
+
+			String winner = race.getWinner();
+			int[] counts = race.getCounts();
+			int finished = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] >= 100) {
+					finished++;
+
+					if (!("Rabbit " + (i + 1)).equals(winner)) {
+						finished = -1;
+					}
+				}
+			}
+
+			if (finished != 1) {
+				problems++;
+				System.out.printf("Seed %d: winner %s with counts %d, %d, %d%n",
+						seed, winner, counts[0], counts[1], counts[2]);
+			}
+
+			Integer previous = wins.get(winner);
+			wins.put(winner, previous == null ? 1 : previous + 1);
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d races in %.3f seconds (%.0f races per second)%n",
+				races, seconds, races / seconds);
+		System.out.println("Wins: " + wins);
+		System.out.println("Problems: " + problems);
+	}
+
+	/**
+	 * Runs one race in real time, or simulates many races if the first
+	 * argument is "simulate". The optional second argument is the number of
+	 * races to simulate (default 1000).
+	 *
+	 * @param args optional "simulate" and number of races
+	 * @throws Exception if interrupted while racing
+	 */
 	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("simulate")) {
+			simulate(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+			return;
+		}
+
 		SleepyRabbitRace race = new SleepyRabbitRace();
 		race.race();
 	}
@@ -0,0 +1,241 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The number of lines, words, characters, and bytes in UTF-8 text, like the
+ * output of the {@code wc} command. All four are found in a single pass over
+ * the raw bytes, without decoding them into characters first.
+ *
+ * Text may be split into chunks that are counted separately (for example by
+ * different threads), and then put back together with
+ * {@link #combine(TextStatistics)}. A word that is split between two chunks
+ * is only counted once.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see {@link CharacterCounter}
+ */
+public class TextStatistics {
+
+	/** Statistics for no text at all. */
+	public static final TextStatistics EMPTY = new TextStatistics(0, 0, 0, 0, false, false);
+
+	/** The highest bit of every byte in a long. */
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	/** The lowest seven bits of every byte in a long. */
+	private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+	/** Every byte of a long set to the newline character. */
+	private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+
+	/** Every byte of a long set to the space character. */
+	private static final long SPACES = 0x2020202020202020L;
+
+	/**
+	 * Added to the lowest seven bits of every byte so that the highest bit is
+	 * set if the byte is at least 0x09 (tab).
+	 */
+	private static final long AT_LEAST_TAB = 0x7777777777777777L;
+
+	/**
+	 * Added to the lowest seven bits of every byte so that the highest bit is
+	 * set if the byte is greater than 0x0D (carriage return).
+	 */
+	private static final long PAST_RETURN = 0x7272727272727272L;
+
+	private final long lines;
+	private final long words;
+	private final long chars;
+	private final long bytes;
+
+	/** Whether the first byte is part of a word. */
+	private final boolean startsInWord;
+
+	/** Whether the last byte is part of a word. */
+	private final boolean endsInWord;
+
+	private TextStatistics(long lines, long words, long chars, long bytes,
+			boolean startsInWord, boolean endsInWord) {
+		this.lines = lines;
+		this.words = words;
+		this.chars = chars;
+		this.bytes = bytes;
+		this.startsInWord = startsInWord;
+		this.endsInWord = endsInWord;
+	}
+
+	/**
+	 * @return number of newline characters
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return number of runs of characters separated by whitespace
+	 */
+	public long getWords() {
+		return words;
+	}
+
+	/**
+	 * @return number of characters (UTF-16 code units)
+	 */
+	public long getChars() {
+		return chars;
+	}
+
+	/**
+	 * @return number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Combines the statistics of this text with the text that immediately
+	 * follows it. If this text ends in the middle of a word and the next text
+	 * starts in the middle of a word, that word was counted twice.
+	 *
+	 * @param next statistics of the text right after this text
+	 * @return statistics of both texts together
+	 */
+	public TextStatistics combine(TextStatistics next) {
+		if (this.bytes == 0) {
+			return next;
+		}
+
+		if (next.bytes == 0) {
+			return this;
+		}
+
+		long split = this.endsInWord && next.startsInWord ? 1 : 0;
+
+		return new TextStatistics(
+				this.lines + next.lines,
+				this.words + next.words - split,
+				this.chars + next.chars,
+				this.bytes + next.bytes,
+				this.startsInWord, next.endsInWord);
+	}
+
+	/**
+	 * Counts the UTF-8 bytes from the buffer's position to its limit. Like
+	 * {@code wc}, a line is counted for every newline, and a word is any run
+	 * of bytes that are not ASCII whitespace (space, tab, newline, vertical
+	 * tab, form feed, or carriage return). Characters are counted the same way
+	 * as {@link CharacterCounter#countCodeUnits(ByteBuffer)}.
+	 *
+	 * Checks 8 bytes at a time by loading them as a single long, and using
+	 * bit operations to test every byte at once.
+	 *
+	 * @param buffer UTF-8 encoded bytes
+	 * @return statistics of the bytes
+	 */
+	public static TextStatistics of(ByteBuffer buffer) {
+		// unlike counting characters, the order matters here since words
+		// depend on the byte before; little endian puts that byte in the
+		// lower bits of the long
+		buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		int start = buffer.position();
+		int limit = buffer.limit();
+
+		if (start == limit) {
+			return EMPTY;
+		}
+
+		long lines = 0;
+		long words = 0;
+		long chars = 0;
+
+		// pretend the text is preceded by whitespace, so a word at the very
+		// start is counted (and removed again by combine if necessary)
+		long before = HIGH_BITS;
+
+		int i = start;
+
+		for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+			long x = buffer.getLong(i);
+			long low = x & LOW_BITS;
+
+			long newline = zeros(x ^ NEWLINES);
+			long space = zeros(x ^ SPACES);
+			long control = (low + AT_LEAST_TAB) & ~(low + PAST_RETURN) & ~x & HIGH_BITS;
+			long white = newline | space | control;
+
+			// a word starts at any byte that is not whitespace but follows one
+			long previous = (white << 8) | (before >>> 56);
+			long starts = ~white & previous & HIGH_BITS;
+
+			lines += Long.bitCount(newline);
+			words += Long.bitCount(starts);
+
+			// same as CharacterCounter.countCodeUnits
+			long continuation = x & ~(x << 1) & HIGH_BITS;
+			long lead = x & (x << 1) & (x << 2) & (x << 3) & ~(x << 4) & HIGH_BITS;
+			chars += Long.BYTES - Long.bitCount(continuation) + Long.bitCount(lead);
+
+			before = white;
+		}
+
+		boolean inWord = (before & (1L << 63)) == 0;
+
+		// handle the remaining bytes one at a time
+		for (; i < limit; i++) {
+			byte b = buffer.get(i);
+			boolean white = isWhitespace(b);
+
+			if (b == '\n') {
+				lines++;
+			}
+
+			if (!white && !inWord) {
+				words++;
+			}
+
+			if ((b & 0xC0) != 0x80) {
+				chars++;
+			}
+
+			if ((b & 0xF8) == 0xF0) {
+				chars++;
+			}
+
+			inWord = !white;
+		}
+
+		return new TextStatistics(lines, words, chars, limit - start,
+				!isWhitespace(buffer.get(start)), !isWhitespace(buffer.get(limit - 1)));
+	}
+
+	/**
+	 * Finds the bytes that are zero. Unlike the common "has zero byte" trick,
+	 * this never marks a byte by mistake because of a borrow from the byte
+	 * next to it, so the result may be counted.
+	 *
+	 * @param x eight bytes to check
+	 * @return the highest bit set for each byte that is zero
+	 */
+	private static long zeros(long x) {
+		long low = (x & LOW_BITS) + LOW_BITS;
+		return ~(low | x | LOW_BITS);
+	}
+
+	/**
+	 * @param b byte to check
+	 * @return whether the byte is ASCII whitespace
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= '\t' && b <= '\r');
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d lines, %d words, %d chars, %d bytes", lines, words, chars, bytes);
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * A pretend clock for simulating threads that sleep, without actually waiting.
+ * Threads call {@link #sleep(long)} instead of {@link Thread#sleep(long)}.
+ * Each sleeping thread is put in a priority queue by the time it should wake
+ * up. Once every registered thread is asleep, the clock jumps straight to the
+ * earliest wake up time and wakes that one thread.
+ *
+ * Since only one registered thread is ever awake at a time (including when
+ * the threads first start), and ties are broken by the order threads went to
+ * sleep, a simulation always runs the same way given the same random seed. A
+ * race that takes seconds in real time takes a couple of milliseconds, most
+ * of which is spent starting the threads and handing the turn from one
+ * thread to the next.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see SleepyRabbitRace
+ */
+public class VirtualClock {
+
+	/**
+	 * A thread waiting for the clock to reach its wake up time.
+	 */
+	private static class Sleeper implements Comparable<Sleeper> {
+		private final long wake;
+		private final long order;
+		private boolean awake;
+
+		public Sleeper(long wake, long order) {
+			this.wake = wake;
+			this.order = order;
+			this.awake = false;
+		}
+
+		@Override
+		public int compareTo(Sleeper other) {
+			int compare = Long.compare(this.wake, other.wake);
+			return compare != 0 ? compare : Long.compare(this.order, other.order);
+		}
+	}
+
+	/** Sleeping threads, ordered by when they wake up. */
+	private final PriorityQueue<Sleeper> sleepers;
+
+	/** Registered threads that have not called {@link #begin()} yet. */
+	private final HashMap<Thread, Sleeper> starting;
+
+	/** Current time in milliseconds since the clock started. */
+	private long now;
+
+	/** Number of sleeps so far, used to break ties. */
+	private long order;
+
+	/** Number of registered threads that are not asleep. */
+	private int running;
+
+	/** Whether the clock is stopped. */
+	private boolean stopped;
+
+	/**
+	 * Initializes a clock at time 0 with no registered threads.
+	 */
+	public VirtualClock() {
+		sleepers = new PriorityQueue<>();
+		starting = new HashMap<>();
+		now = 0;
+		order = 0;
+		running = 0;
+		stopped = false;
+	}
+
+	/**
+	 * Registers a thread that will use this clock. Must be called for every
+	 * thread before calling {@link #start()}. The thread starts out asleep,
+	 * and is woken up at the current time in the order it was registered.
+	 *
+	 * @param thread thread that will use this clock
+	 */
+	public synchronized void register(Thread thread) {
+		Sleeper sleeper = new Sleeper(now, order++);
+		starting.put(thread, sleeper);
+		sleepers.add(sleeper);
+	}
+
+	/**
+	 * Starts the clock once every thread is registered.
+	 */
+	public synchronized void start() {
+		advance();
+	}
+
+	/**
+	 * Must be called by every registered thread before doing anything else.
+	 * Waits until it is this thread's turn to run for the first time.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized void begin() throws InterruptedException {
+		Sleeper sleeper = starting.remove(Thread.currentThread());
+
+		if (sleeper == null) {
+			throw new IllegalStateException("Thread is not registered.");
+		}
+
+		await(sleeper);
+	}
+
+	/**
+	 * Removes the current thread from the clock. Must be called by every
+	 * registered thread once it is done sleeping, or time will stop.
+	 */
+	public synchronized void deregister() {
+		running--;
+		advance();
+	}
+
+	/**
+	 * Stops the clock. Any threads still asleep stay asleep until interrupted.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * @return current time in milliseconds since the clock started
+	 */
+	public synchronized long now() {
+		return now;
+	}
+
+	/**
+	 * Makes the current thread sleep until the clock reaches the wake up time.
+	 *
+	 * @param millis how long to sleep in pretend milliseconds
+	 * @throws InterruptedException if interrupted while sleeping
+	 */
+	public synchronized void sleep(long millis) throws InterruptedException {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Sleep must not be negative.");
+		}
+
+		Sleeper sleeper = new Sleeper(now + millis, order++);
+		sleepers.add(sleeper);
+		running--;
+		advance();
+
+		await(sleeper);
+	}
+
+	/**
+	 * Waits until the sleeper is woken up.
+	 *
+	 * @param sleeper sleeper for the current thread
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private void await(Sleeper sleeper) throws InterruptedException {
+		try {
+			while (!sleeper.awake) {
+				this.wait();
+			}
+		}
+		catch (InterruptedException e) {
+			// if not woken up yet, this thread is awake again anyway
+			if (sleepers.remove(sleeper)) {
+				running++;
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Once every registered thread is asleep, moves the clock forward to the
+	 * earliest wake up time and wakes up that thread.
+	 */
+	private void advance() {
+		if (running == 0 && !stopped && !sleepers.isEmpty()) {
+			Sleeper next = sleepers.poll();
+
+			now = next.wake;
+			next.awake = true;
+			running++;
+
+			this.notifyAll();
+		}
+	}
+}
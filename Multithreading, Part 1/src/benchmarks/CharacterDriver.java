@@ -0,0 +1,262 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+/**
+ * Benchmarks the different ways of counting characters in a file using
+ * {@code CharacterCounter}, and compares sequential versus concurrent
+ * comparison of files using {@code CharacterCompare}.
+ *
+ * Benchmarking in Java is difficult due to optimization and garbage
+ * collection. For example, the first run is almost always longer than all
+ * subsequent runs. Instead of timing a few runs ourselves, we use JMH (the
+ * Java Microbenchmark Harness) to handle warmup, forking, and dead-code
+ * elimination for us. Each benchmark is sampled many times, so we can look at
+ * the median and the slowest runs instead of only the average.
+ *
+ * Run {@link #main(String[])} to sweep the buffer size, the way the file is
+ * read, and the file size, and output the results as comma-separated values.
+ *
+ * JMH requires benchmarks to be in a named package, so this class calls the
+ * demos through method handles (see {@link Demos}). See the README for how to
+ * compile and run it.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see Demos
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CharacterDriver {
+
+	/** Text repeated to create input files of any size. */
+	private static final Path SOURCE = Paths.get("text", "pg2701.txt");
+
+	/** {@code CharacterCounter.countCharacters(Path, int)} */
+	private static final MethodHandle DECODE = Demos.find("CharacterCounter", "countCharacters",
+			int.class, Path.class, int.class);
+
+	/** {@code CharacterCounter.countBuffered(Path, int)} */
+	private static final MethodHandle BYTES = Demos.find("CharacterCounter", "countBuffered",
+			long.class, Path.class, int.class);
+
+	/** {@code CharacterCounter.countMapped(Path)} */
+	private static final MethodHandle MAPPED = Demos.find("CharacterCounter", "countMapped",
+			long.class, Path.class);
+
+	/** {@code CharacterCompare.compareSequentially(Path, Path)} */
+	private static final MethodHandle SEQUENTIAL = Demos.find("CharacterCompare", "compareSequentially",
+			int.class, Path.class, Path.class);
+
+	/** {@code CharacterCompare.compareConcurrently(Path, Path)} */
+	private static final MethodHandle CONCURRENT = Demos.find("CharacterCompare", "compareConcurrently",
+			int.class, Path.class, Path.class);
+
+	/**
+	 * The files to count, created once before any measurements.
+	 */
+	@State(Scope.Benchmark)
+	public static class Input {
+
+		/** Size of the first file in bytes. The second is half as large. */
+		@Param({ "100000", "1000000", "10000000" })
+		public int bytes;
+
+		public Path first;
+		public Path second;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			first = generate(bytes);
+			second = generate(bytes / 2);
+		}
+
+		@TearDown(Level.Trial)
+		public void teardown() throws IOException {
+			Files.deleteIfExists(first);
+			Files.deleteIfExists(second);
+		}
+	}
+
+	/**
+	 * How to read the file when counting.
+	 */
+	@State(Scope.Benchmark)
+	public static class Reader {
+
+		/**
+		 * Number of characters (when decoding) or bytes (when not) to read at
+		 * a time. The first is the size used by
+		 * {@code CharacterCounter.countCharacters(Path)}.
+		 */
+		@Param({ "1000", "8192", "65536" })
+		public int size;
+
+		/**
+		 * Either "decode" to decode the bytes into characters, or "bytes" to
+		 * count the characters straight from the bytes.
+		 */
+		@Param({ "decode", "bytes" })
+		public String mode;
+	}
+
+	/**
+	 * Creates a temporary file of the requested size by repeating
+	 * {@link #SOURCE}, cut off at the end of a line so that no character is
+	 * split in half.
+	 *
+	 * @param bytes size of the file to create
+	 * @return temporary file
+	 * @throws IOException if unable to create the file
+	 */
+	private static Path generate(int bytes) throws IOException {
+		byte[] text = Files.readAllBytes(SOURCE);
+		Path file = Files.createTempFile("characters", ".txt");
+
+		try (OutputStream out = Files.newOutputStream(file)) {
+			int remaining = bytes;
+
+			while (remaining > 0) {
+				int length = Math.min(remaining, text.length);
+
+				if (length < text.length) {
+					while (length > 0 && text[length - 1] != '\n') {
+						length--;
+					}
+
+					if (length == 0) {
+						break;
+					}
+				}
+
+				out.write(text, 0, length);
+				remaining -= length;
+			}
+		}
+
+		return file;
+	}
+
+	@Benchmark
+	public long count(Input input, Reader reader) throws Throwable {
+		if (reader.mode.equals("decode")) {
+			return (int) DECODE.invokeExact(input.first, reader.size);
+		}
+
+		return (long) BYTES.invokeExact(input.first, reader.size);
+	}
+
+	@Benchmark
+	public long mapped(Input input) throws Throwable {
+		return (long) MAPPED.invokeExact(input.first);
+	}
+
+	@Benchmark
+	public int compareSequentially(Input input) throws Throwable {
+		return (int) SEQUENTIAL.invokeExact(input.first, input.second);
+	}
+
+	@Benchmark
+	public int compareConcurrently(Input input) throws Throwable {
+		return (int) CONCURRENT.invokeExact(input.first, input.second);
+	}
+
+	/**
+	 * Finds the bytes allocated per operation, measured by the JMH garbage
+	 * collection profiler. The name of this result changed between versions
+	 * of JMH, so match the end of the name. JMH returns the results as a raw
+	 * {@link Result} type, so the entries must use the raw type too.
+	 *
+	 * @param result results of one benchmark
+	 * @return bytes allocated per operation, or NaN if not measured
+	 */
+	@SuppressWarnings("rawtypes")
+	private static double allocated(RunResult result) {
+		for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+			if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+				return entry.getValue().getScore();
+			}
+		}
+
+		return Double.NaN;
+	}
+
+	/**
+	 * @param params benchmark parameters
+	 * @param name name of the parameter
+	 * @return value of the parameter, or an empty string if not used
+	 */
+	private static String param(BenchmarkParams params, String name) {
+		String value = params.getParam(name);
+		return value == null ? "" : value;
+	}
+
+	/**
+	 * Runs every benchmark with the garbage collection profiler, and outputs
+	 * the mean, median, and 99th percentile times and the bytes allocated per
+	 * operation as comma-separated values. Assumes the file pg2701.txt is
+	 * located in the "text" subdirectory.
+	 *
+	 * @param args optional regular expression of the benchmarks to run
+	 * @throws RunnerException if unable to run the benchmarks
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "";
+
+		Collection<RunResult> results = new Runner(new OptionsBuilder()
+				.include(CharacterDriver.class.getSimpleName() + "\\." + include)
+				.addProfiler("gc")
+				.build()).run();
+
+		System.out.println();
+		System.out.println("benchmark,bytes,size,mode,mean ms,p50 ms,p99 ms,alloc bytes/op");
+
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			Statistics statistics = result.getPrimaryResult().getStatistics();
+
+			String benchmark = params.getBenchmark();
+			String method = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+
+			System.out.printf("%s,%s,%s,%s,%.3f,%.3f,%.3f,%.0f%n", method,
+					param(params, "bytes"), param(params, "size"), param(params, "mode"),
+					statistics.getMean(), statistics.getPercentile(50),
+					statistics.getPercentile(99), allocated(result));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Finds the demo methods measured by the benchmarks in this package. JMH only
+ * generates code for benchmarks in a named package, but the demos are all in
+ * the default package, which Java does not let other packages refer to.
+ * Instead, each benchmark looks up the methods it needs by name once, and
+ * keeps each {@link MethodHandle} in a {@code static final} field. The JIT
+ * compiler treats those handles as constants and inlines the calls, so calling
+ * {@link MethodHandle#invokeExact(Object...)} costs the same as calling the
+ * method directly.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ */
+class Demos {
+
+	/**
+	 * Finds a public static method of a demo class in the default package.
+	 *
+	 * @param type name of the demo class
+	 * @param name name of the method
+	 * @param returns return type of the method
+	 * @param parameters parameter types of the method
+	 * @return handle for calling the method
+	 * @throws IllegalStateException if the method cannot be found
+	 */
+	static MethodHandle find(String type, String name, Class<?> returns, Class<?>... parameters) {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName(type), name,
+					MethodType.methodType(returns, parameters));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to find " + type + "." + name, e);
+		}
+	}
+}
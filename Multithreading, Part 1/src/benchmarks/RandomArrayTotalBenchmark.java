@@ -0,0 +1,249 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Demonstrates basic multithreading, and illustrates how to break up a problem
+ * into subproblems. Also used to motivate the inefficiency of constantly
+ * creating new threads instead of reusing them.
+ *
+ * Uses JMH (the Java Microbenchmark Harness) to handle warmup, forking, and
+ * dead-code elimination for us. The array is created and filled once per
+ * trial, outside of the timed methods, so only the totals are measured.
+ * Run {@link #main(String[])} for a report of how the pooled total scales with
+ * the number of threads.
+ *
+ * JMH requires benchmarks to be in a named package, so this class calls
+ * {@code RandomArrayTotal} through method handles (see {@link Demos}). See
+ * the README for how to compile and run it.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class RandomArrayTotalBenchmark {
+
+	/** Fixed seed so every run totals the same numbers. */
+	private static final long SEED = 212;
+
+	/**
+	 * Number of longs between neighboring subtotals when they are spread out.
+	 * 16 longs is 128 bytes, which covers two 64-byte cache lines in case the
+	 * hardware fetches lines in pairs.
+	 */
+	private static final int PADDED = 16;
+
+	/** {@code RandomArrayTotal.fillRandom(int[], int, long, int)} */
+	private static final MethodHandle FILL = Demos.find("RandomArrayTotal", "fillRandom",
+			void.class, int[].class, int.class, long.class, int.class);
+
+	/** {@code RandomArrayTotal.total(int[])} */
+	private static final MethodHandle TOTAL = Demos.find("RandomArrayTotal", "total",
+			long.class, int[].class);
+
+	/** {@code RandomArrayTotal.total(int[], int)} */
+	private static final MethodHandle POOLED = Demos.find("RandomArrayTotal", "total",
+			long.class, int[].class, int.class);
+
+	/** {@code RandomArrayTotal.totalWithThreads(int[], int)} */
+	private static final MethodHandle THREADS = Demos.find("RandomArrayTotal", "totalWithThreads",
+			long.class, int[].class, int.class);
+
+	@Param({ "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "1", "2", "5" })
+	public int threads;
+
+	/** Numbers to total, filled before any measurements. */
+	private int[] numbers;
+
+	/** Shared subtotals used by the false sharing benchmarks. */
+	private long[] subtotals;
+
+	/** Threads used by the false sharing benchmarks. */
+	private ExecutorService workers;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		numbers = new int[size];
+		FILL.invokeExact(numbers, 100, SEED, threads);
+
+		subtotals = new long[threads * PADDED];
+		workers = Executors.newFixedThreadPool(threads);
+
+		// make sure the shared pool exists before measuring
+		POOLED.invoke(numbers, threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		workers.shutdown();
+	}
+
+	@Benchmark
+	public void single(Blackhole hole) throws Throwable {
+		hole.consume((long) TOTAL.invokeExact(numbers));
+	}
+
+	@Benchmark
+	public void pool(Blackhole hole) throws Throwable {
+		hole.consume((long) POOLED.invokeExact(numbers, threads));
+	}
+
+	@Benchmark
+	public void newThreads(Blackhole hole) throws Throwable {
+		hole.consume((long) THREADS.invokeExact(numbers, threads));
+	}
+
+	/**
+	 * Every worker adds directly into its own slot of a shared array, and the
+	 * slots sit right next to each other. The workers never touch the same
+	 * slot, but they do share a cache line, so each write invalidates the
+	 * line in the other cores' caches (false sharing).
+	 */
+	@Benchmark
+	public void adjacentSubtotals(Blackhole hole) throws Exception {
+		hole.consume(sharedTotal(1));
+	}
+
+	/**
+	 * Same as {@link #adjacentSubtotals(Blackhole)}, except each slot gets its
+	 * own cache lines, so the workers no longer interfere with each other.
+	 */
+	@Benchmark
+	public void paddedSubtotals(Blackhole hole) throws Exception {
+		hole.consume(sharedTotal(PADDED));
+	}
+
+	/**
+	 * Totals the array with one chunk per thread, with every chunk
+	 * accumulating directly into {@code subtotals[chunk * stride]} instead of
+	 * a local variable.
+	 *
+	 * @param stride distance between the slots of neighboring chunks
+	 * @return total of the array
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if a chunk fails
+	 */
+	private long sharedTotal(final int stride) throws InterruptedException, ExecutionException {
+		final long[] subtotals = this.subtotals;
+		final int[] numbers = this.numbers;
+		final int chunk = numbers.length / threads;
+
+		ArrayList<Future<Long>> futures = new ArrayList<>(threads);
+
+		for (int i = 0; i < threads; i++) {
+			final int slot = i * stride;
+			final int start = i * chunk;
+
+			// the last chunk also gets any remainder
+			final int end = i == threads - 1 ? numbers.length : start + chunk;
+
+			futures.add(workers.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					subtotals[slot] = 0;
+
+					for (int j = start; j < end; j++) {
+						subtotals[slot] += numbers[j];
+					}
+
+					return subtotals[slot];
+				}
+			}));
+		}
+
+		long total = 0;
+
+		for (Future<Long> future : futures) {
+			total += future.get();
+		}
+
+		return total;
+	}
+
+	/**
+	 * Runs the pooled and false sharing benchmarks on the largest array with
+	 * every number of threads from 1 up to the number of processors, and
+	 * outputs the speedup compared to 1 thread.
+	 *
+	 * @param args unused
+	 * @throws RunnerException if unable to run the benchmarks
+	 */
+	public static void main(String[] args) throws RunnerException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		String[] threads = new String[cores];
+
+		for (int i = 0; i < cores; i++) {
+			threads[i] = Integer.toString(i + 1);
+		}
+
+		Collection<RunResult> results = new Runner(new OptionsBuilder()
+				.include(RandomArrayTotalBenchmark.class.getSimpleName()
+						+ "\\.(pool|adjacentSubtotals|paddedSubtotals)$")
+				.param("size", "10000000")
+				.param("threads", threads)
+				.build()).run();
+
+		ArrayList<String> methods = new ArrayList<>();
+		double[][] scores = new double[3][cores];
+
+		for (RunResult result : results) {
+			String benchmark = result.getParams().getBenchmark();
+			String method = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+
+			if (!methods.contains(method)) {
+				methods.add(method);
+			}
+
+			int row = methods.indexOf(method);
+			int column = Integer.parseInt(result.getParams().getParam("threads")) - 1;
+			scores[row][column] = result.getPrimaryResult().getScore();
+		}
+
+		System.out.println();
+		System.out.println("benchmark,threads,ms/op,speedup");
+
+		for (int row = 0; row < methods.size(); row++) {
+			for (int column = 0; column < cores; column++) {
+				System.out.printf("%s,%d,%.3f,%.2f%n", methods.get(row), column + 1,
+						scores[row][column], scores[row][0] / scores[row][column]);
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Calculates subtotals using the incubating Vector API, which adds up several
+ * values at once using SIMD instructions. Each vector of integers is widened
+ * into two vectors of longs before adding, so the result never overflows
+ * where {@link RandomArrayTotal#subtotal(int[], int, int)} would not.
+ *
+ * This class is kept in its own {@code vector} source folder, since it only
+ * compiles with the {@code --add-modules jdk.incubator.vector} flag and would
+ * otherwise stop every other demo in {@code src} from compiling. Compile it
+ * separately after the {@code src} folder, into the same output folder:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp bin -d bin vector/VectorSubtotal.java
+ * </pre>
+ *
+ * The same flag is needed when running. {@link RandomArrayTotal} loads this
+ * class by name, and falls back to its scalar loop if this class was not
+ * compiled or the flag is missing.
+ *
+ * <p><em>
+ * Note that this class is designed to illustrate a specific concept, and
+ * may not be an example of proper class design outside of this context.
+ * </em></p>
+ *
+ * @see RandomArrayTotal#fastSubtotal(int[], int, int)
+ */
+public class VectorSubtotal implements RandomArrayTotal.Kernel {
+
+	/** Widest integer vectors supported by this processor. */
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	/** Long vectors of the same width, which fit half as many values. */
+	private static final VectorSpecies<Long> LONGS =
+			VectorSpecies.of(long.class, INTS.vectorShape());
+
+	@Override
+	public long subtotal(int[] numbers, int start, int chunk) {
+		int end = start + chunk;
+		int bound = start + INTS.loopBound(chunk);
+
+		LongVector total = LongVector.zero(LONGS);
+
+		for (int i = start; i < bound; i += INTS.length()) {
+			IntVector values = IntVector.fromArray(INTS, numbers, i);
+
+			// widen the lower and upper halves into longs
+			total = total.add(values.convertShape(VectorOperators.I2L, LONGS, 0));
+			total = total.add(values.convertShape(VectorOperators.I2L, LONGS, 1));
+		}
+
+		long result = total.reduceLanes(VectorOperators.ADD);
+
+		// add any values left over that do not fill an entire vector
+		for (int i = bound; i < end; i++) {
+			result += numbers[i];
+		}
+
+		return result;
+	}
+}
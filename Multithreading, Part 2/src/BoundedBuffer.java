@@ -1,5 +1,6 @@
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 /**
  * Illustrates how to use a generic type, basic synchronization, and the
@@ -92,14 +93,22 @@ public class BoundedBuffer<E> {
 			logger.debug("put(): woke up, checking buffer.");
 		}
 
-		logger.debug("put(): adding {} in buffer.", item);
+		// checking the level first means nothing is boxed when debug is off,
+		// and Unbox avoids creating Integer objects when debug is on
+		boolean debug = logger.isDebugEnabled();
+
+		if (debug) {
+			logger.debug("put(): adding {} in buffer.", item);
+		}
 
 		buffer[end] = item;		// Place item at the end of the buffer.
 		num++;					// Increase the number of items stored.
 		end = (end + 1) % max;	// Move over 1, loop to start if necessary.
 
-		logger.debug("put(): buffer now has {} elements.", num);
-		logger.debug("put(): range is now ({}, {}).", beg, end);
+		if (debug) {
+			logger.debug("put(): buffer now has {} elements.", Unbox.box(num));
+			logger.debug("put(): range is now ({}, {}).", Unbox.box(beg), Unbox.box(end));
+		}
 
 		// Wake up any sleeping threads to re-check buffer status
 		this.notifyAll();
@@ -136,14 +145,20 @@ public class BoundedBuffer<E> {
 			logger.debug("get(): woke up, checking buffer.");
 		}
 
-		logger.debug("get(): getting {} from buffer.", buffer[beg]);
+		boolean debug = logger.isDebugEnabled();
+
+		if (debug) {
+			logger.debug("get(): getting {} from buffer.", buffer[beg]);
+		}
 
 		Object item = buffer[beg];	// Get item from start of the buffer.
 		num--;						// Increase the number of items stored.
 		beg = (beg + 1) % max;		// Move over 1, loop to start if necessary.
 
-		logger.debug("put(): buffer now has {} elements.", num);
-		logger.debug("put(): range is now ({}, {}).", beg, end);
+		if (debug) {
+			logger.debug("get(): buffer now has {} elements.", Unbox.box(num));
+			logger.debug("get(): range is now ({}, {}).", Unbox.box(beg), Unbox.box(end));
+		}
 
 		// Wake up any sleeping threads to re-check buffer status
 		this.notifyAll();
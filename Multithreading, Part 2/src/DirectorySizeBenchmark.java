@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Compares {@link DirectorySizeCalculator} and
+ * {@link MultithreadedDirectorySizeCalculator} on synthetic trees created by
+ * {@link FileTreeGenerator}, using several different numbers of threads.
+ * Outputs comma-separated values so the results are easy to chart.
+ *
+ * Like the other benchmarks in these demos, take these results with a grain
+ * of salt. The trees are read from the operating system cache after the first
+ * run, so this measures the cost of traversal rather than of the disk.
+ * Debug messages are turned off first, since the calculators log a message
+ * for every file and would otherwise mostly measure the logging.
+ *
+ * This benchmark does not report system calls per file. The per-process
+ * counters in {@code /proc/self/io} only count read and write calls, not the
+ * stat and directory listing calls that a traversal actually makes, so those
+ * numbers were mostly noise. Use a tool like {@code strace -c -f} on the whole
+ * run to see those calls instead.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see DirectorySizeCalculator
+ * @see MultithreadedDirectorySizeCalculator
+ * @see FileTreeGenerator
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class DirectorySizeBenchmark {
+
+	/** Number of untimed runs before measuring. */
+	private static final int WARMUP = 2;
+
+	/** Number of timed runs to average. */
+	private static final int RUNS = 5;
+
+	/** Thread counts to try with the multithreaded calculator. */
+	private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+	/**
+	 * A directory traversal we want to measure.
+	 */
+	private static abstract class Engine {
+		private final String name;
+		private final int threads;
+
+		public Engine(String name, int threads) {
+			this.name = name;
+			this.threads = threads;
+		}
+
+		/**
+		 * Counts the files in the directory.
+		 *
+		 * @param root directory to count
+		 * @return number of files found
+		 */
+		public abstract long run(Path root);
+
+		/**
+		 * Releases anything this engine created, such as worker threads.
+		 * Does nothing by default.
+		 */
+		public void close() {
+			// does nothing by default
+		}
+	}
+
+	/**
+	 * @return the sequential calculator
+	 */
+	private static Engine sequential() {
+		final DirectorySizeCalculator calculator = new DirectorySizeCalculator();
+
+		return new Engine("sequential", 1) {
+			@Override
+			public long run(Path root) {
+				calculator.reset();
+				calculator.addDirectory(root);
+				return calculator.getFiles();
+			}
+		};
+	}
+
+	/**
+	 * Creates the calculator (and its worker threads) up front, so starting
+	 * the threads is not counted as part of the traversal.
+	 *
+	 * @param threads number of worker threads
+	 * @return the multithreaded calculator using the specified threads
+	 */
+	private static Engine multithreaded(int threads) {
+		final MultithreadedDirectorySizeCalculator calculator =
+				new MultithreadedDirectorySizeCalculator(threads);
+
+		return new Engine("multithreaded", threads) {
+			@Override
+			public long run(Path root) {
+				calculator.reset();
+				calculator.addDirectory(root);
+				return calculator.getFiles();
+			}
+
+			@Override
+			public void close() {
+				calculator.shutdown();
+			}
+		};
+	}
+
+	/**
+	 * Measures one engine on one tree, and outputs one line of results. Closes
+	 * the engine when done.
+	 *
+	 * @param shape shape of the tree
+	 * @param root root of the tree
+	 * @param expected number of files in the tree
+	 * @param engine engine to measure
+	 */
+	private static void measure(FileTreeGenerator.Shape shape, Path root, long expected, Engine engine) {
+		long elapsed = 0;
+
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				engine.run(root);
+			}
+
+			for (int i = 0; i < RUNS; i++) {
+				long start = System.nanoTime();
+				long files = engine.run(root);
+				elapsed += System.nanoTime() - start;
+
+				if (files != expected) {
+					System.err.printf("Warning: %s found %d files instead of %d.%n",
+							engine.name, files, expected);
+				}
+			}
+		}
+		finally {
+			engine.close();
+		}
+
+		double seconds = elapsed / 1000000000.0;
+		double rate = expected * RUNS / seconds;
+
+		System.out.printf("%s,%s,%d,%d,%.3f,%.0f%n",
+				shape, engine.name, engine.threads, expected,
+				seconds / RUNS * 1000, rate);
+	}
+
+	/**
+	 * Generates each shape of tree in a temporary directory and measures each
+	 * engine on it. The optional argument controls the scale of the trees.
+	 *
+	 * @param args optional scale of the trees (default 1000)
+	 * @throws IOException if unable to generate the trees
+	 */
+	public static void main(String[] args) throws IOException {
+		int scale = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		// otherwise the calculators spend most of their time logging
+		Configurator.setRootLevel(Level.INFO);
+
+		System.out.println("shape,engine,threads,files,ms,files/sec");
+
+		for (FileTreeGenerator.Shape shape : FileTreeGenerator.Shape.values()) {
+			Path root = Files.createTempDirectory("tree-" + shape.name().toLowerCase());
+
+			try {
+				long files = FileTreeGenerator.generate(root, shape, scale, 212);
+
+				measure(shape, root, files, sequential());
+
+				for (int threads : THREADS) {
+					measure(shape, root, files, multithreaded(threads));
+				}
+			}
+			finally {
+				FileTreeGenerator.delete(root);
+			}
+		}
+	}
+}
@@ -17,6 +17,7 @@ import org.apache.logging.log4j.Logger;
  *
  * @see DirectorySizeCalculator
  * @see MultithreadedDirectorySizeCalculator
+ * @see DirectorySizeEstimator
  *
  * @author Sophie Engle
  * @author CS 212 Software Development
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Estimates the total number of files and bytes found in a directory and its
+ * subdirectories without visiting every subdirectory. Useful when a directory
+ * is too large to walk with {@link DirectorySizeCalculator} or
+ * {@link MultithreadedDirectorySizeCalculator} in the time available.
+ *
+ * Each "probe" walks a single random path from the root to a leaf directory.
+ * At every level, it picks one subdirectory at random and multiplies its
+ * weight by the number of subdirectories it could have picked. Adding up the
+ * weighted files and bytes along the path gives an unbiased estimate of the
+ * totals (Knuth's tree size estimator). Averaging many probes narrows the
+ * confidence interval, so the estimate can be refined for as long as we are
+ * willing to wait.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see DirectorySizeCalculator
+ * @see MultithreadedDirectorySizeCalculator
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class DirectorySizeEstimator {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/** Maximum number of directory listings to remember between probes. */
+	public static final int CACHE_SIZE = 10000;
+
+	/** Root directory being estimated. */
+	private final Path root;
+
+	/** Used to pick subdirectories at random. */
+	private final Random random;
+
+	/**
+	 * Remembers the listings of directories we already visited. Every probe
+	 * starts at the root, so the top few levels are listed over and over
+	 * unless we keep them around.
+	 */
+	private final HashMap<Path, Listing> cache;
+
+	private final Estimate files;
+	private final Estimate bytes;
+
+	/**
+	 * Initializes an estimator for the specified directory, using a random
+	 * seed based on the current time.
+	 *
+	 * @param root directory to estimate
+	 */
+	public DirectorySizeEstimator(Path root) {
+		this(root, System.currentTimeMillis());
+	}
+
+	/**
+	 * Initializes an estimator for the specified directory. Using the same
+	 * seed on an unchanged directory will produce the same estimates.
+	 *
+	 * @param root directory to estimate
+	 * @param seed seed for the random number generator
+	 */
+	public DirectorySizeEstimator(Path root, long seed) {
+		this.root = root;
+		this.random = new Random(seed);
+		this.cache = new HashMap<>();
+
+		this.files = new Estimate();
+		this.bytes = new Estimate();
+	}
+
+	/**
+	 * Returns the current estimate for the number of files.
+	 *
+	 * @return estimated number of files
+	 */
+	public Estimate getFiles() {
+		return files;
+	}
+
+	/**
+	 * Returns the current estimate for the number of bytes.
+	 *
+	 * @return estimated number of bytes
+	 */
+	public Estimate getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Refines the estimate with the specified number of additional probes.
+	 *
+	 * @param probes number of random paths to walk
+	 */
+	public void refine(int probes) {
+		for (int i = 0; i < probes; i++) {
+			probe();
+		}
+	}
+
+	/**
+	 * Refines the estimate with as many additional probes as possible in the
+	 * specified amount of time. Always runs at least one probe.
+	 *
+	 * @param millis number of milliseconds to spend refining
+	 */
+	public void refineFor(long millis) {
+		long deadline = System.nanoTime() + millis * 1000000;
+
+		do {
+			probe();
+		} while (System.nanoTime() < deadline);
+
+		logger.debug("Estimate now based on {} probes", files.getSamples());
+	}
+
+	/**
+	 * Walks one random path from the root directory to a leaf directory,
+	 * and adds the result to the estimates.
+	 */
+	private void probe() {
+		double weight = 1;
+		double files = 0;
+		double bytes = 0;
+
+		Path directory = root;
+
+		while (directory != null) {
+			Listing listing = list(directory);
+
+			files += weight * listing.files;
+			bytes += weight * listing.bytes;
+
+			if (listing.subdirectories.length == 0) {
+				directory = null;
+			}
+			else {
+				weight *= listing.subdirectories.length;
+				directory = listing.subdirectories[random.nextInt(listing.subdirectories.length)];
+			}
+		}
+
+		this.files.add(files);
+		this.bytes.add(bytes);
+	}
+
+	/**
+	 * Lists the files and subdirectories in a directory, or returns the
+	 * cached listing if this directory was visited before. Directories we are
+	 * unable to read are treated as empty.
+	 *
+	 * @param directory directory to list
+	 * @return listing of the directory
+	 */
+	private Listing list(Path directory) {
+		Listing listing = cache.get(directory);
+
+		if (listing != null) {
+			return listing;
+		}
+
+		long files = 0;
+		long bytes = 0;
+		ArrayList<Path> subdirectories = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				if (Files.isDirectory(path)) {
+					subdirectories.add(path);
+				}
+				else {
+					files += 1;
+					bytes += Files.size(path);
+				}
+			}
+		}
+		catch (IOException e) {
+			logger.warn("Unable to parse {}", directory);
+			logger.catching(Level.DEBUG, e);
+		}
+
+		listing = new Listing(files, bytes, subdirectories.toArray(new Path[0]));
+
+		if (cache.size() < CACHE_SIZE) {
+			cache.put(directory, listing);
+		}
+
+		return listing;
+	}
+
+	/**
+	 * The files, bytes, and subdirectories directly inside a directory.
+	 */
+	private static class Listing {
+		private final long files;
+		private final long bytes;
+		private final Path[] subdirectories;
+
+		public Listing(long files, long bytes, Path[] subdirectories) {
+			this.files = files;
+			this.bytes = bytes;
+			this.subdirectories = subdirectories;
+		}
+	}
+
+	/**
+	 * Keeps a running mean and variance of the probe results, using Welford's
+	 * method so we do not have to store every sample.
+	 */
+	public static class Estimate {
+
+		/** Number of standard errors for a 95% confidence interval. */
+		private static final double Z = 1.96;
+
+		private long samples;
+		private double mean;
+		private double squares;
+
+		private Estimate() {
+			samples = 0;
+			mean = 0;
+			squares = 0;
+		}
+
+		private void add(double value) {
+			samples++;
+
+			double delta = value - mean;
+			mean += delta / samples;
+			squares += delta * (value - mean);
+		}
+
+		/**
+		 * @return number of probes used by this estimate
+		 */
+		public long getSamples() {
+			return samples;
+		}
+
+		/**
+		 * @return estimated value
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * Returns the half-width of the 95% confidence interval. Needs at
+		 * least two probes, so returns infinity before then.
+		 *
+		 * @return margin of error of the estimate
+		 */
+		public double getMargin() {
+			if (samples < 2) {
+				return Double.POSITIVE_INFINITY;
+			}
+
+			double variance = squares / (samples - 1);
+			return Z * Math.sqrt(variance / samples);
+		}
+
+		/**
+		 * @return lower bound of the 95% confidence interval
+		 */
+		public double getLow() {
+			return Math.max(0, mean - getMargin());
+		}
+
+		/**
+		 * @return upper bound of the 95% confidence interval
+		 */
+		public double getHigh() {
+			return mean + getMargin();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.0f (95%% CI %.0f to %.0f, %d probes)",
+					getMean(), getLow(), getHigh(), samples);
+		}
+	}
+
+	/**
+	 * Compares the estimate after a short and slightly longer amount of time
+	 * to the actual values.
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		Path path = Paths.get(".");
+		DirectorySizeEstimator estimator = new DirectorySizeEstimator(path, 42);
+
+		estimator.refineFor(100);
+		System.out.println("Estimated files: " + estimator.getFiles());
+		System.out.println("Estimated bytes: " + estimator.getBytes());
+
+		estimator.refineFor(500);
+		System.out.println("Estimated files: " + estimator.getFiles());
+		System.out.println("Estimated bytes: " + estimator.getBytes());
+
+		DirectorySizeCalculator actual = new DirectorySizeCalculator();
+		actual.addDirectory(path);
+
+		System.out.println("Actual files: " + actual.getFiles());
+		System.out.println("Actual bytes: " + actual.getBytes());
+	}
+}
@@ -0,0 +1,368 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Finds duplicate files in one or more directories. Reuses the traversal from
+ * {@link MultithreadedDirectorySizeCalculator} to group files by size, and
+ * then narrows down the candidates in two hashing rounds:
+ *
+ * <ol>
+ * <li>Only files with the same size can be duplicates, which costs nothing
+ * extra since the traversal already looks up the size of every file.</li>
+ * <li>Of those, only files whose first {@link #PREFIX} bytes hash the same
+ * can be duplicates.</li>
+ * <li>Only the files that still collide are hashed in full, using
+ * memory-mapped reads.</li>
+ * </ol>
+ *
+ * This way we only read every byte of the files that are most likely to be
+ * duplicates. The hashing is spread across a separate work queue.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see MultithreadedDirectorySizeCalculator
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class DuplicateFinder extends MultithreadedDirectorySizeCalculator {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/** Number of bytes hashed in the first hashing round. */
+	public static final int PREFIX = 4096;
+
+	/** Maximum number of bytes memory-mapped at once when hashing a file. */
+	private static final long SEGMENT = 1L << 30;
+
+	/** Algorithm used to hash files. */
+	private static final String ALGORITHM = "SHA-256";
+
+	/** Work queue used to hash files. */
+	private final WorkQueue hashers;
+
+	/** Files found by the traversal, grouped by size. */
+	private final ConcurrentHashMap<String, Queue<Path>> sizes;
+
+	/**
+	 * Initializes a duplicate finder with {@link WorkQueue#DEFAULT} threads
+	 * for both the traversal and the hashing.
+	 */
+	public DuplicateFinder() {
+		this(WorkQueue.DEFAULT);
+	}
+
+	/**
+	 * Initializes a duplicate finder with the specified number of threads for
+	 * both the traversal and the hashing.
+	 *
+	 * @param threads number of worker threads to use
+	 */
+	public DuplicateFinder(int threads) {
+		super(threads);
+		hashers = new WorkQueue(threads);
+		sizes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Groups every non-empty file by its size. Empty files are trivially the
+	 * same, so they are not reported as duplicates.
+	 */
+	@Override
+	protected void foundFile(Path file, long size) {
+		if (size > 0) {
+			add(sizes, Long.toString(size), file);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		sizes.clear();
+	}
+
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		hashers.shutdown();
+	}
+
+	/**
+	 * Returns the groups of duplicate files found in the directories added
+	 * since the last reset. Waits for the traversal to finish first.
+	 *
+	 * @return list of groups of files with identical content
+	 * @throws InterruptedException if interrupted while waiting for hashing
+	 */
+	public List<List<Path>> getDuplicates() throws InterruptedException {
+		finish();
+
+		ArrayList<Queue<Path>> candidates = collisions(sizes.values());
+		logger.debug("{} groups of files with the same size", candidates.size());
+
+		ConcurrentHashMap<String, Queue<Path>> prefixes = hash(candidates, true);
+		candidates = collisions(prefixes.values());
+		logger.debug("{} groups of files with the same prefix", candidates.size());
+
+		ArrayList<List<Path>> duplicates = new ArrayList<>();
+		ArrayList<Queue<Path>> remaining = new ArrayList<>();
+
+		for (Queue<Path> group : candidates) {
+			// no need to hash again if the prefix was the entire file
+			if (size(group.peek()) <= PREFIX) {
+				duplicates.add(new ArrayList<>(group));
+			}
+			else {
+				remaining.add(group);
+			}
+		}
+
+		ConcurrentHashMap<String, Queue<Path>> contents = hash(remaining, false);
+
+		for (Queue<Path> group : collisions(contents.values())) {
+			duplicates.add(new ArrayList<>(group));
+		}
+
+		return duplicates;
+	}
+
+	/**
+	 * Hashes every file in the groups using the hashing work queue, and then
+	 * regroups them by size and hash.
+	 *
+	 * @param groups groups of files to hash
+	 * @param prefix whether to only hash the first {@link #PREFIX} bytes
+	 * @return files grouped by size and hash
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private ConcurrentHashMap<String, Queue<Path>> hash(Collection<Queue<Path>> groups,
+			boolean prefix) throws InterruptedException {
+		ConcurrentHashMap<String, Queue<Path>> results = new ConcurrentHashMap<>();
+
+		int count = 0;
+
+		for (Queue<Path> group : groups) {
+			count += group.size();
+		}
+
+		CountDownLatch remaining = new CountDownLatch(count);
+
+		for (Queue<Path> group : groups) {
+			for (Path file : group) {
+				hashers.execute(new HashMinion(file, prefix, results, remaining));
+			}
+		}
+
+		remaining.await();
+		return results;
+	}
+
+	/**
+	 * Hashes a single file and adds it to the results.
+	 */
+	private class HashMinion implements Runnable {
+
+		private final Path file;
+		private final boolean prefix;
+		private final ConcurrentHashMap<String, Queue<Path>> results;
+		private final CountDownLatch remaining;
+
+		public HashMinion(Path file, boolean prefix,
+				ConcurrentHashMap<String, Queue<Path>> results,
+				CountDownLatch remaining) {
+			this.file = file;
+			this.prefix = prefix;
+			this.results = results;
+			this.remaining = remaining;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long size = Files.size(file);
+				String hash = prefix ? hashPrefix(file) : hashContents(file, size);
+				add(results, size + ":" + hash, file);
+			}
+			catch (IOException e) {
+				logger.warn("Unable to hash {}", file);
+				logger.catching(Level.DEBUG, e);
+			}
+			finally {
+				// must count down even on failure, or getDuplicates() waits forever
+				remaining.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Hashes the first {@link #PREFIX} bytes of a file.
+	 *
+	 * @param file file to hash
+	 * @return hash in hexadecimal
+	 * @throws IOException if unable to read the file
+	 */
+	private static String hashPrefix(Path file) throws IOException {
+		MessageDigest digest = digest();
+		byte[] buffer = new byte[PREFIX];
+		int total = 0;
+
+		try (InputStream in = Files.newInputStream(file)) {
+			int read = 0;
+
+			while (total < PREFIX && (read = in.read(buffer, total, PREFIX - total)) >= 0) {
+				total += read;
+			}
+		}
+
+		digest.update(buffer, 0, total);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Hashes the entire contents of a file by memory-mapping it one segment at
+	 * a time. This avoids copying the file into a separate buffer first.
+	 *
+	 * @param file file to hash
+	 * @param size size of the file in bytes
+	 * @return hash in hexadecimal
+	 * @throws IOException if unable to read the file
+	 */
+	private static String hashContents(Path file, long size) throws IOException {
+		MessageDigest digest = digest();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (long position = 0; position < size; position += SEGMENT) {
+				long length = Math.min(SEGMENT, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				digest.update(buffer);
+			}
+		}
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @return a new message digest for {@link #ALGORITHM}
+	 */
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Converts bytes into a hexadecimal string.
+	 *
+	 * @param bytes bytes to convert
+	 * @return hexadecimal string
+	 */
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * @param file file to check
+	 * @return size of the file, or -1 if unable to determine the size
+	 */
+	private static long size(Path file) {
+		try {
+			return Files.size(file);
+		}
+		catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns only the groups with more than one file in them.
+	 *
+	 * @param groups groups of files
+	 * @return groups that are still possible duplicates
+	 */
+	private static ArrayList<Queue<Path>> collisions(Collection<Queue<Path>> groups) {
+		ArrayList<Queue<Path>> collisions = new ArrayList<>();
+
+		for (Queue<Path> group : groups) {
+			if (group.size() > 1) {
+				collisions.add(group);
+			}
+		}
+
+		return collisions;
+	}
+
+	/**
+	 * Safely adds a file to a group, creating the group if necessary.
+	 *
+	 * @param groups map of groups
+	 * @param key key of the group to add to
+	 * @param file file to add
+	 */
+	private static void add(ConcurrentHashMap<String, Queue<Path>> groups, String key, Path file) {
+		Queue<Path> group = groups.get(key);
+
+		if (group == null) {
+			group = new ConcurrentLinkedQueue<>();
+			Queue<Path> existing = groups.putIfAbsent(key, group);
+
+			// another thread may have created this group first
+			if (existing != null) {
+				group = existing;
+			}
+		}
+
+		group.add(file);
+	}
+
+	/**
+	 * Outputs any duplicate files found in the current directory.
+	 *
+	 * @param args unused
+	 */
+	public static void main(String[] args) {
+		DuplicateFinder finder = new DuplicateFinder();
+		finder.addDirectory(Paths.get("."));
+
+		try {
+			for (List<Path> group : finder.getDuplicates()) {
+				System.out.println(group);
+			}
+		}
+		catch (InterruptedException e) {
+			System.err.println("Interrupted while finding duplicates.");
+		}
+		finally {
+			finder.shutdown();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Generates synthetic directory trees with a known number of files, so the
+ * directory traversal demos can be compared on the same input every time.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see DirectorySizeBenchmark
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class FileTreeGenerator {
+
+	/**
+	 * The different shapes of trees we know how to generate. The scale passed
+	 * to {@link FileTreeGenerator#generate(Path, Shape, int, long)} controls
+	 * how large each shape gets.
+	 */
+	public enum Shape {
+		/** One level of {@code scale} directories with 10 small files each. */
+		WIDE,
+
+		/**
+		 * A chain of {@code scale} nested directories with 2 small files each,
+		 * up to {@link FileTreeGenerator#MAX_DEPTH} directories deep.
+		 */
+		DEEP,
+
+		/** 10 directories with {@code scale} files of at most 16 bytes each. */
+		TINY,
+
+		/** A handful of 1 GB sparse files that take up almost no disk space. */
+		SPARSE;
+	}
+
+	/** Size of the "small" files in bytes. */
+	private static final int SMALL = 1024;
+
+	/**
+	 * Maximum depth of the {@link Shape#DEEP} tree, to stay well under the
+	 * maximum path length on most operating systems.
+	 */
+	public static final int MAX_DEPTH = 200;
+
+	/** Size of each sparse file in bytes. */
+	private static final long HUGE = 1L << 30;
+
+	/**
+	 * Generates a tree of the specified shape inside the root directory.
+	 *
+	 * @param root directory to generate the tree inside (must exist)
+	 * @param shape shape of the tree
+	 * @param scale how large to make the tree (should be positive)
+	 * @param seed seed used to pick file sizes, so trees are reproducible
+	 * @return number of files created
+	 * @throws IOException if unable to create the tree
+	 */
+	public static long generate(Path root, Shape shape, int scale, long seed) throws IOException {
+		Random random = new Random(seed);
+		byte[] data = new byte[SMALL];
+		random.nextBytes(data);
+
+		long files = 0;
+
+		switch (shape) {
+			case WIDE:
+				for (int i = 0; i < scale; i++) {
+					Path directory = Files.createDirectory(root.resolve("dir" + i));
+
+					for (int j = 0; j < 10; j++) {
+						Files.write(directory.resolve("file" + j), data);
+						files++;
+					}
+				}
+				break;
+
+			case DEEP:
+				Path directory = root;
+
+				for (int i = 0; i < Math.min(scale, MAX_DEPTH); i++) {
+					directory = Files.createDirectory(directory.resolve("d" + i));
+
+					Files.write(directory.resolve("a"), data);
+					Files.write(directory.resolve("b"), data);
+					files += 2;
+				}
+				break;
+
+			case TINY:
+				for (int i = 0; i < 10; i++) {
+					Path parent = Files.createDirectory(root.resolve("dir" + i));
+
+					for (int j = 0; j < scale; j++) {
+						Path file = parent.resolve("file" + j);
+						Files.write(file, new byte[random.nextInt(17)]);
+						files++;
+					}
+				}
+				break;
+
+			case SPARSE:
+				for (int i = 0; i < scale / 100 + 1; i++) {
+					// setting the length without writing anything creates a
+					// sparse file on most file systems
+					try (RandomAccessFile file = new RandomAccessFile(
+							root.resolve("sparse" + i).toFile(), "rw")) {
+						file.setLength(HUGE);
+					}
+
+					files++;
+				}
+				break;
+		}
+
+		return files;
+	}
+
+	/**
+	 * Deletes a directory and everything inside of it.
+	 *
+	 * @param root directory to delete
+	 * @throws IOException if unable to delete the tree
+	 */
+	public static void delete(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) {
+					throw e;
+				}
+
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
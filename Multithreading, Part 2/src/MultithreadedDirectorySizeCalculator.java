@@ -1,7 +1,10 @@
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -17,6 +20,7 @@ import org.apache.logging.log4j.Logger;
  *
  * @see DirectorySizeCalculator
  * @see MultithreadedDirectorySizeCalculator
+ * @see DirectorySizeEstimator
  *
  * @author Sophie Engle
  * @author CS 212 Software Development
@@ -27,74 +31,237 @@ public class MultithreadedDirectorySizeCalculator {
 	private static final Logger logger = LogManager.getLogger();
 
 	private final WorkQueue minions;
-	private int pending;
 
-	private long files;
-	private long bytes;
+	/*
+	 * Every minion touches the counters below at least twice, so we avoid
+	 * locking on "this" for them. A LongAdder spreads its updates across
+	 * several internal cells (roughly one per contending thread), and only
+	 * adds the cells together when we ask for the sum.
+	 */
+
+	/** Amount of work not yet finished. Only updated atomically. */
+	private final AtomicInteger pending;
+
+	private final LongAdder files;
+	private final LongAdder bytes;
+	private final LongAdder directories;
+
+	/** Set to stop the remaining minions early. Cleared by {@link #reset()}. */
+	private volatile boolean cancelled;
+
+	/** When the counters were last reset, used to calculate progress rates. */
+	private volatile long started;
+
+	/** Periodically sends progress snapshots to a listener, if requested. */
+	private ProgressReporter reporter;
 
 	/**
 	 * Initializes the number of files found and total bytes found to 0. Also
 	 * initializes a work queue with {@link WorkQueue#DEFAULT} threads.
 	 */
 	public MultithreadedDirectorySizeCalculator() {
-		minions = new WorkQueue();
-		pending = 0;
+		this(WorkQueue.DEFAULT);
+	}
 
-		files = 0;
-		bytes = 0;
+	/**
+	 * Initializes the number of files found and total bytes found to 0. Also
+	 * initializes a work queue with the specified number of threads.
+	 *
+	 * @param threads number of worker threads to use
+	 */
+	public MultithreadedDirectorySizeCalculator(int threads) {
+		minions = new WorkQueue(threads);
+		pending = new AtomicInteger(0);
+
+		files = new LongAdder();
+		bytes = new LongAdder();
+		directories = new LongAdder();
+
+		cancelled = false;
+		started = System.nanoTime();
+		reporter = null;
 	}
 
 
 	/**
 	 * Resets the counters, allowing this object to be easily reused if desired.
-	 * Note that we had to make this method synchronized in the multithreaded
-	 * version.
+	 * Only safe to call once all of the pending work is finished, which is why
+	 * we call {@link #finish()} first.
 	 */
-	public synchronized void reset() {
+	public void reset() {
 		finish();
-		bytes = 0;
-		files = 0;
+		bytes.reset();
+		files.reset();
+		directories.reset();
+
+		cancelled = false;
+		started = System.nanoTime();
 		logger.debug("Counters reset");
 	}
 
 	/**
-	 * Returns the number of files found since the last reset. Note that we had
-	 * to make this method synchronized in the multithreaded version.
+	 * Returns the number of files found since the last reset. No longer needs
+	 * to be synchronized, since we wait for the work to finish and the counter
+	 * itself is thread-safe.
 	 *
 	 * @return number of files
 	 */
-	public synchronized long getFiles() {
+	public long getFiles() {
 		logger.debug("Getting files");
 		finish();
-		return files;
+		return files.sum();
 	}
 
 	/**
-	 * Returns the number of bytes found since the last reset. Note that we had
-	 * to make this method synchronized in the multithreaded version.
+	 * Returns the number of bytes found since the last reset. No longer needs
+	 * to be synchronized, since we wait for the work to finish and the counter
+	 * itself is thread-safe.
 	 *
 	 * @return number of bytes
 	 */
-	public synchronized long getBytes() {
+	public long getBytes() {
 		logger.debug("Getting bytes");
 		finish();
-		return bytes;
+		return bytes.sum();
 	}
 
 	/**
 	 * Helper method, that helps a thread wait until all of the current
 	 * work is done. This is useful for resetting the counters or shutting
 	 * down the work queue.
+	 *
+	 * We still need to lock to wait, but the minions only lock when the
+	 * pending work drops to zero (see {@link #decrementPending()}).
 	 */
-	public synchronized void finish() {
+	public void finish() {
+		if (pending.get() <= 0) {
+			return;
+		}
+
 		try {
-			while (pending > 0) {
-				logger.debug("Waiting until finished");
-				this.wait();
+			synchronized (this) {
+				while (pending.get() > 0) {
+					logger.debug("Waiting until finished");
+					this.wait();
+				}
 			}
 		}
 		catch (InterruptedException e) {
 			logger.debug("Finish interrupted", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until all of the current work is done, or until the specified
+	 * amount of time has passed. Unlike {@link #finish()}, this lets us bound
+	 * how long we are willing to wait for a large scan.
+	 *
+	 * @param millis maximum number of milliseconds to wait
+	 * @return {@code true} if all of the work finished in time
+	 */
+	public boolean finish(long millis) {
+		long deadline = System.nanoTime() + millis * 1000000;
+
+		try {
+			synchronized (this) {
+				while (pending.get() > 0) {
+					long remaining = (deadline - System.nanoTime()) / 1000000;
+
+					if (remaining <= 0) {
+						logger.debug("Ran out of time waiting to finish");
+						return false;
+					}
+
+					this.wait(remaining);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			logger.debug("Finish interrupted", e);
+			Thread.currentThread().interrupt();
+			return pending.get() <= 0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Asks the minions to stop early. Minions already running will stop at the
+	 * next file, and any minions still in the queue will exit immediately.
+	 * The counters keep whatever was found before the cancel, and further
+	 * directories are ignored until {@link #reset()} is called.
+	 */
+	public void cancel() {
+		logger.debug("Cancelling");
+		cancelled = true;
+	}
+
+	/**
+	 * @return {@code true} if {@link #cancel()} was called since the last reset
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns a snapshot of the counters without waiting for the pending work
+	 * to finish. Never blocks the minions, so it may be called as often as
+	 * desired while a scan is running.
+	 *
+	 * @return progress of the scan so far
+	 */
+	public ScanProgress getProgress() {
+		return new ScanProgress(directories.sum(), files.sum(), bytes.sum(),
+				pending.get(), System.nanoTime() - started, cancelled);
+	}
+
+	/**
+	 * Scans the specified directory, but only waits for the specified amount
+	 * of time. If the scan does not finish in time, the remaining work is
+	 * cancelled and a partial result is returned instead. Use
+	 * {@link ScanProgress#isComplete()} to tell the two apart.
+	 *
+	 * @param directory directory to scan
+	 * @param millis maximum number of milliseconds to wait
+	 * @return final or partial progress of the scan
+	 */
+	public ScanProgress addDirectory(Path directory, long millis) {
+		addDirectory(directory);
+
+		if (!finish(millis)) {
+			cancel();
+
+			// cancelled minions exit quickly, so wait for them so the counters
+			// do not keep changing after we return
+			finish();
+		}
+
+		return getProgress();
+	}
+
+	/**
+	 * Starts sending progress snapshots to the listener every {@code millis}
+	 * milliseconds, replacing any previous listener. Snapshots are sent from a
+	 * separate background thread, so the minions are never slowed down by
+	 * the listener.
+	 *
+	 * @param listener receives progress snapshots
+	 * @param millis milliseconds between snapshots
+	 */
+	public synchronized void startProgress(ScanProgress.Listener listener, long millis) {
+		stopProgress();
+		reporter = new ProgressReporter(listener, millis);
+		reporter.start();
+	}
+
+	/**
+	 * Stops sending progress snapshots, if they were started.
+	 */
+	public synchronized void stopProgress() {
+		if (reporter != null) {
+			reporter.interrupt();
+			reporter = null;
 		}
 	}
 
@@ -103,9 +270,10 @@ public class MultithreadedDirectorySizeCalculator {
 	 * finished. Necessary to prevent our code from running forever in the
 	 * background.
 	 */
-	public synchronized void shutdown() {
+	public void shutdown() {
 		logger.debug("Shutting down");
 		finish();
+		stopProgress();
 		minions.shutdown();
 	}
 
@@ -123,7 +291,9 @@ public class MultithreadedDirectorySizeCalculator {
 				minions.execute(new DirectoryMinion(directory));
 			}
 			else if (Files.exists(directory)) {
-				updateCounters(1, Files.size(directory));
+				long size = Files.size(directory);
+				updateCounters(1, size);
+				foundFile(directory, size);
 			}
 		}
 		catch (IOException e) {
@@ -152,11 +322,24 @@ public class MultithreadedDirectorySizeCalculator {
 
 		@Override
 		public void run() {
-			try {
-				long files = 0;
-				long bytes = 0;
+			long files = 0;
+			long bytes = 0;
+
+			if (cancelled) {
+				// Still need to let everyone know this work is "done".
+				decrementPending();
+				return;
+			}
+
+			try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+				directories.increment();
+
+				for (Path path : listing) {
+					if (cancelled) {
+						logger.debug("Minion cancelled {}", directory);
+						break;
+					}
 
-				for (Path path : Files.newDirectoryStream(directory)) {
 					if (Files.isDirectory(path)) {
 						// Note that we now create a new runnable object and add it
 						// to the work queue.
@@ -167,39 +350,99 @@ public class MultithreadedDirectorySizeCalculator {
 						// updateCounters(1, Files.size(path));
 
 						// Note that we are adding to LOCAL variables, so we
-						// only lock ONCE when we are done.
+						// only update the shared counters ONCE when we are done.
+						long size = Files.size(path);
 						files += 1;
-						bytes += Files.size(path);
+						bytes += size;
+
+						foundFile(path, size);
 					}
 				}
-
-				// Now that we are done, go ahead and lock to update the
-				// counter values.
-				updateCounters(files, bytes);
-
-				// Indicate that we no longer have "pending" work to do.
-				decrementPending();
 			}
 			catch (IOException e) {
 				logger.warn("Unable to parse {}", directory);
 				logger.catching(Level.DEBUG, e);
 			}
+			finally {
+				// Now that we are done, update the counter values with
+				// whatever we were able to find.
+				updateCounters(files, bytes);
+
+				// Indicate that we no longer have "pending" work to do. This
+				// must happen even if we ran into an exception, or finish()
+				// would wait forever.
+				decrementPending();
+			}
 
 			logger.debug("Minion finished {}", directory);
 		}
 	}
 
 	/**
-	 * Updates the number of files and bytes found. Note that we had to make
-	 * this method synchronized to work in the multithreaded version.
+	 * Periodically sends a progress snapshot to a listener until interrupted.
+	 * Only reads the counters, so it never blocks the minions. An exception
+	 * from the listener is logged and skipped, so one bad update does not
+	 * stop all later updates.
+	 */
+	private class ProgressReporter extends Thread {
+
+		private final ScanProgress.Listener listener;
+		private final long millis;
+
+		public ProgressReporter(ScanProgress.Listener listener, long millis) {
+			this.listener = listener;
+			this.millis = millis;
+
+			// Do not keep the program running just to report progress.
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!isInterrupted()) {
+					Thread.sleep(millis);
+
+					try {
+						listener.update(getProgress());
+					}
+					catch (RuntimeException e) {
+						logger.warn("Progress listener failed", e);
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				logger.debug("Progress reporting stopped");
+			}
+		}
+	}
+
+	/**
+	 * Called by the minions every time a file is found. Does nothing by
+	 * default, but allows subclasses to reuse this traversal for other work.
+	 * May be called by several threads at once, so overriding methods must be
+	 * thread-safe.
+	 *
+	 * @param file the file found
+	 * @param size size of the file in bytes
+	 *
+	 * @see DuplicateFinder
+	 */
+	protected void foundFile(Path file, long size) {
+		// does nothing by default
+	}
+
+	/**
+	 * Updates the number of files and bytes found. Does not need to be
+	 * synchronized, since the counters are thread-safe on their own.
 	 *
 	 * @param files
 	 * @param bytes
 	 */
-	private synchronized void updateCounters(long files, long bytes) {
-		this.files += files;
-		this.bytes += bytes;
-		logger.debug("Counters are {} files and {} bytes", this.files, this.bytes);
+	private void updateCounters(long files, long bytes) {
+		this.files.add(files);
+		this.bytes.add(bytes);
+		logger.debug("Added {} files and {} bytes", files, bytes);
 	}
 
 	/**
@@ -207,24 +450,27 @@ public class MultithreadedDirectorySizeCalculator {
 	 * need this since we can no longer call join() on the threads. (The
 	 * threads keep running forever in the background.)
 	 *
-	 * We made this a synchronized method in the outer class, since locking
-	 * on the "this" object within an inner class does not work.
+	 * This used to be a synchronized method in the outer class, but an atomic
+	 * increment is enough since nobody needs to be notified here.
 	 */
-	private synchronized void incrementPending() {
-		pending++;
-		logger.debug("Pending is now {}", pending);
+	private void incrementPending() {
+		int current = pending.incrementAndGet();
+		logger.debug("Pending is now {}", current);
 	}
 
 	/**
 	 * Indicates that we now have one less "pending" work, and will notify
 	 * any waiting threads if we no longer have any more pending work left.
+	 * Only the minion that drops the count to zero needs to lock.
 	 */
-	private synchronized void decrementPending() {
-		pending--;
-		logger.debug("Pending is now {}", pending);
+	private void decrementPending() {
+		int current = pending.decrementAndGet();
+		logger.debug("Pending is now {}", current);
 
-		if (pending <= 0) {
-			this.notifyAll();
+		if (current <= 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
 		}
 	}
 
@@ -242,5 +488,32 @@ public class MultithreadedDirectorySizeCalculator {
 		System.out.println(demo.getBytes() + " bytes");
 
 		demo.shutdown();
+
+		// Report progress while scanning, but give up after a second.
+		demo = new MultithreadedDirectorySizeCalculator();
+		demo.startProgress(new ScanProgress.Listener() {
+			@Override
+			public void update(ScanProgress progress) {
+				System.out.println(progress);
+			}
+		}, 100);
+
+		System.out.println(demo.addDirectory(Paths.get("."), 1000));
+		demo.shutdown();
+
+		// Compare how the work scales as we add more worker threads.
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			demo = new MultithreadedDirectorySizeCalculator(threads);
+
+			long start = System.nanoTime();
+			demo.addDirectory(Paths.get("."));
+			demo.finish();
+			double elapsed = (System.nanoTime() - start) / 1000000.0;
+
+			System.out.printf("%2d threads: %10.3f ms (%d files)%n",
+					threads, elapsed, demo.getFiles());
+
+			demo.shutdown();
+		}
 	}
 }
@@ -0,0 +1,177 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+/**
+ * The same bounded buffer as {@link BoundedBuffer}, except it uses a
+ * {@link ProfiledLock} instead of {@code synchronized} methods so we can
+ * measure how much the producers and consumers fight over the buffer. Its
+ * {@link ProfiledLock#await()} and {@link ProfiledLock#signalAll()} methods
+ * work just like {@code wait()} and {@code notifyAll()}. Nothing is measured
+ * unless profiling is turned on.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ *
+ * @param <E> type of element to store in buffer
+ *
+ * @see BoundedBuffer
+ * @see ProfiledLock
+ */
+public class ProfiledBoundedBuffer<E> {
+
+	/**
+	 * A circular buffer (or bounded buffer) of elements.
+	 *
+	 * We use an {@link Object} array since we cannot create arrays of
+	 * generic types.
+	 */
+	private Object[] buffer;
+
+	/** Beginning index of circular buffer. */
+	private int beg;
+
+	/** Ending index of circular buffer. */
+	private int end;
+
+	/** Number of elements stored in buffer. */
+	private int num;
+
+	/** Maximum number of elements buffer may store. */
+	private int max;
+
+	/** Used to generate log messages. */
+	private static Logger logger = LogManager.getLogger();
+
+	/** Protects every field above. Shares measurements with all buffers. */
+	private final ProfiledLock lock = new ProfiledLock("ProfiledBoundedBuffer");
+
+	/**
+	 * Initializes a bounded buffer capable of storing {@code bufferSize}
+	 * elements at once.
+	 *
+	 * @param bufferSize size of buffer (should be positive)
+	 */
+	public ProfiledBoundedBuffer(int bufferSize) {
+		buffer = new Object[bufferSize];
+
+		beg = 0;
+		end = 0;
+		num = 0;
+		max = buffer.length;
+	}
+
+	/**
+	 * Places an element into the buffer, or if full, waits until space is
+	 * available.
+	 *
+	 * @param item to store in buffer
+	 * @throws InterruptedException if unable to wait
+	 */
+	public void put(E item) throws InterruptedException {
+		lock.lock();
+
+		try {
+			// Wait until we have space for the item.
+			while (num >= max) {
+				logger.debug("put(): waiting until buffer not full.");
+				// await() will release the lock until signalled
+				lock.await();
+				logger.debug("put(): woke up, checking buffer.");
+			}
+
+			// checking the level first means nothing is boxed when debug is off,
+			// and Unbox avoids creating Integer objects when debug is on
+			boolean debug = logger.isDebugEnabled();
+
+			if (debug) {
+				logger.debug("put(): adding {} in buffer.", item);
+			}
+
+			buffer[end] = item;		// Place item at the end of the buffer.
+			num++;					// Increase the number of items stored.
+			end = (end + 1) % max;	// Move over 1, loop to start if necessary.
+
+			if (debug) {
+				logger.debug("put(): buffer now has {} elements.", Unbox.box(num));
+				logger.debug("put(): range is now ({}, {}).", Unbox.box(beg), Unbox.box(end));
+			}
+
+			// Wake up any sleeping threads to re-check buffer status
+			lock.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Convenience method for adding multiple items at once. Not the most
+	 * efficient implementation, but demonstrates that the lock is reentrant,
+	 * so this can call other methods that lock since the thread already
+	 * holds the appropriate lock.
+	 *
+	 * @param items
+	 * @throws InterruptedException
+	 */
+	public void putAll(E[] items) throws InterruptedException {
+		lock.lock();
+
+		try {
+			for (E item : items) {
+				this.put(item);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns an element from the buffer. If the buffer is
+	 * empty, waits until there is an element to retrieve.
+	 *
+	 * @return element of type {@code E}
+	 * @throws InterruptedException if unable to wait
+	 */
+	@SuppressWarnings("unchecked")
+	public E get() throws InterruptedException {
+		lock.lock();
+
+		try {
+			// Wait until we have an item to get
+			while (num <= 0) {
+				logger.debug("get(): waiting until buffer not empty.");
+				lock.await();
+				logger.debug("get(): woke up, checking buffer.");
+			}
+
+			boolean debug = logger.isDebugEnabled();
+
+			if (debug) {
+				logger.debug("get(): getting {} from buffer.", buffer[beg]);
+			}
+
+			Object item = buffer[beg];	// Get item from start of the buffer.
+			num--;						// Increase the number of items stored.
+			beg = (beg + 1) % max;		// Move over 1, loop to start if necessary.
+
+			if (debug) {
+				logger.debug("get(): buffer now has {} elements.", Unbox.box(num));
+				logger.debug("get(): range is now ({}, {}).", Unbox.box(beg), Unbox.box(end));
+			}
+
+			// Wake up any sleeping threads to re-check buffer status
+			lock.signalAll();
+
+			// Return the item, cast as an element of type E
+			return (E) item;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,452 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock that can measure how much threads fight over it. It works like a
+ * {@code synchronized} block together with {@link Object#wait()} and
+ * {@link Object#notifyAll()}:
+ *
+ * <pre>
+ * lock.lock();
+ *
+ * try {
+ *     while (!ready) {
+ *         lock.await();
+ *     }
+ *     ...
+ *     lock.signalAll();
+ * }
+ * finally {
+ *     lock.unlock();
+ * }
+ * </pre>
+ *
+ * When profiling is turned on (with {@link #enable()} or by starting Java with
+ * {@code -Dlocks.profile=true}), every lock records how long threads waited to
+ * get it, how long they held it, and how many other threads were waiting for
+ * or holding it at the time. Locks with the same site name (for example every
+ * {@link ProfiledBoundedBuffer}) share the same measurements. The measurements go
+ * into histograms with one bucket per power of 2, so recording only takes a
+ * few atomic increments. Use {@link #report()} to see the results.
+ *
+ * When profiling is off, this is only a {@link ReentrantLock}. The
+ * {@link ProfiledBoundedBuffer} and {@link ProfiledWorkQueue} classes use this
+ * lock in place of the {@code synchronized} blocks in {@link BoundedBuffer}
+ * and {@link WorkQueue}, so those stay simple examples of
+ * {@code wait()} and {@code notifyAll()}.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see LockDemo
+ * @see ProfiledBoundedBuffer
+ * @see ProfiledWorkQueue
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class ProfiledLock {
+
+	/** Whether to record measurements. */
+	private static volatile boolean enabled = Boolean.getBoolean("locks.profile");
+
+	/** Measurements for every site, sorted by name. */
+	private static final ConcurrentSkipListMap<String, Site> sites = new ConcurrentSkipListMap<>();
+
+	/** The actual lock. */
+	private final ReentrantLock lock;
+
+	/** Used to wait and signal while holding the lock. */
+	private final Condition condition;
+
+	/** Measurements shared by every lock with this site name. */
+	private final Site site;
+
+	/**
+	 * Number of threads that are waiting for or holding this lock. Threads
+	 * waiting in {@link #await()} are not included.
+	 */
+	private final AtomicInteger inside;
+
+	/**
+	 * When the current holder got the lock. Only used by the thread holding
+	 * the lock, so it does not need to be thread-safe.
+	 */
+	private long held;
+
+	/**
+	 * Whether the current holder is being measured. Profiling may be turned
+	 * on or off while a thread holds the lock, so this makes sure every
+	 * measured lock is also measured when unlocked.
+	 */
+	private boolean measuring;
+
+	/**
+	 * Initializes a lock that records measurements under the site name.
+	 *
+	 * @param name name of the place in the code this lock protects
+	 */
+	public ProfiledLock(String name) {
+		this.lock = new ReentrantLock();
+		this.condition = lock.newCondition();
+		this.inside = new AtomicInteger();
+
+		Site site = sites.get(name);
+
+		if (site == null) {
+			site = new Site(name);
+			Site existing = sites.putIfAbsent(name, site);
+
+			// another lock may have created this site first
+			if (existing != null) {
+				site = existing;
+			}
+		}
+
+		this.site = site;
+	}
+
+	/**
+	 * Turns on recording measurements for every lock.
+	 */
+	public static void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * Turns off recording measurements for every lock.
+	 */
+	public static void disable() {
+		enabled = false;
+	}
+
+	/**
+	 * Waits until the lock is available and then takes it. May be called
+	 * again by a thread that already holds the lock, which must then call
+	 * {@link #unlock()} once for every call to this method.
+	 */
+	public void lock() {
+		// only the outermost lock is measured
+		if (lock.isHeldByCurrentThread()) {
+			lock.lock();
+			return;
+		}
+
+		if (!enabled) {
+			lock.lock();
+			measuring = false;
+			return;
+		}
+
+		int others = inside.getAndIncrement();
+		long start = System.nanoTime();
+
+		lock.lock();
+
+		held = System.nanoTime();
+		measuring = true;
+		site.acquired(held - start, others);
+	}
+
+	/**
+	 * Releases the lock.
+	 */
+	public void unlock() {
+		if (measuring && lock.getHoldCount() == 1) {
+			site.held(System.nanoTime() - held);
+			inside.decrementAndGet();
+		}
+
+		lock.unlock();
+	}
+
+	/**
+	 * Releases the lock and waits until signalled, like {@link Object#wait()}.
+	 * Must be called while holding the lock. The time spent waiting does not
+	 * count as holding the lock.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		await(0);
+	}
+
+	/**
+	 * Releases the lock and waits until signalled or until the time runs
+	 * out, like {@link Object#wait(long)}. Must be called while holding the
+	 * lock. The time spent waiting does not count as holding the lock.
+	 *
+	 * @param millis maximum time to wait in milliseconds, or 0 to wait forever
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await(long millis) throws InterruptedException {
+		boolean measured = measuring;
+
+		if (measured) {
+			site.held(System.nanoTime() - held);
+			inside.decrementAndGet();
+		}
+
+		try {
+			if (millis > 0) {
+				condition.await(millis, TimeUnit.MILLISECONDS);
+			}
+			else {
+				condition.await();
+			}
+		}
+		finally {
+			// the lock is held again here, even if interrupted, but another
+			// holder may have changed measuring while this thread waited
+			measuring = measured;
+
+			if (measured) {
+				inside.incrementAndGet();
+				held = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Wakes up every thread waiting in {@link #await()}, like
+	 * {@link Object#notifyAll()}. Must be called while holding the lock.
+	 */
+	public void signalAll() {
+		condition.signalAll();
+	}
+
+	/**
+	 * Clears the measurements of every site.
+	 */
+	public static void reset() {
+		for (Site site : sites.values()) {
+			site.reset();
+		}
+	}
+
+	/**
+	 * Returns a table of the measurements of every site that has been locked
+	 * at least once while profiling was on. Times are in microseconds, and
+	 * percentiles are rounded up to the next power of 2 nanoseconds. A lock
+	 * is counted as contended if another thread was waiting for or holding
+	 * it when it was requested.
+	 *
+	 * @return table of measurements
+	 */
+	public static String report() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(String.format("%-45s %10s %9s %11s %11s %11s %11s %11s %9s%n",
+				"site", "locks", "contended", "wait mean", "wait p50", "wait p99",
+				"hold mean", "hold p99", "max queue"));
+
+		for (Map.Entry<String, Site> entry : sites.entrySet()) {
+			Site site = entry.getValue();
+			long locks = site.waits.count();
+
+			if (locks == 0) {
+				continue;
+			}
+
+			builder.append(String.format("%-45s %10d %8.1f%% %11.1f %11.1f %11.1f %11.1f %11.1f %9d%n",
+					entry.getKey(), locks, 100.0 * site.contended.sum() / locks,
+					site.waits.mean() / 1000, site.waits.percentile(50) / 1000.0,
+					site.waits.percentile(99) / 1000.0, site.holds.mean() / 1000,
+					site.holds.percentile(99) / 1000.0, site.queue.get()));
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Measurements for every lock with the same site name.
+	 */
+	private static class Site {
+		private final String name;
+		private final Histogram waits;
+		private final Histogram holds;
+		private final LongAdder contended;
+
+		/** Largest number of other threads seen waiting for or holding a lock. */
+		private final AtomicInteger queue;
+
+		public Site(String name) {
+			this.name = name;
+			this.waits = new Histogram();
+			this.holds = new Histogram();
+			this.contended = new LongAdder();
+			this.queue = new AtomicInteger();
+		}
+
+		public void acquired(long nanos, int others) {
+			waits.add(nanos);
+
+			if (others > 0) {
+				contended.increment();
+
+				// only update the maximum when it actually changes
+				int max = queue.get();
+
+				while (others > max && !queue.compareAndSet(max, others)) {
+					max = queue.get();
+				}
+			}
+		}
+
+		public void held(long nanos) {
+			holds.add(nanos);
+		}
+
+		public void reset() {
+			waits.reset();
+			holds.reset();
+			contended.reset();
+			queue.set(0);
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Counts how many times fell within each power of 2 nanoseconds. Bucket
+	 * {@code i} holds times from 2<sup>i - 1</sup> (inclusive) up to
+	 * 2<sup>i</sup> (exclusive), and bucket 0 holds times of 0.
+	 */
+	private static class Histogram {
+		private final AtomicLongArray buckets;
+		private final LongAdder total;
+
+		public Histogram() {
+			buckets = new AtomicLongArray(Long.SIZE);
+			total = new LongAdder();
+		}
+
+		public void add(long nanos) {
+			nanos = Math.max(0, nanos);
+			buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+			total.add(nanos);
+		}
+
+		public long count() {
+			long count = 0;
+
+			for (int i = 0; i < buckets.length(); i++) {
+				count += buckets.get(i);
+			}
+
+			return count;
+		}
+
+		public double mean() {
+			long count = count();
+			return count == 0 ? 0 : (double) total.sum() / count;
+		}
+
+		/**
+		 * @param percent percentile to find, from 0 to 100
+		 * @return upper bound of the bucket that holds the percentile
+		 */
+		public long percentile(double percent) {
+			long count = count();
+			long target = (long) Math.ceil(count * percent / 100);
+			long seen = 0;
+
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+
+				if (seen >= target && seen > 0) {
+					return i == 0 ? 0 : 1L << Math.min(i, Long.SIZE - 2);
+				}
+			}
+
+			return 0;
+		}
+
+		public void reset() {
+			for (int i = 0; i < buckets.length(); i++) {
+				buckets.set(i, 0);
+			}
+
+			total.reset();
+		}
+	}
+
+	/**
+	 * Turns on profiling, runs many tiny tasks on a work queue and passes
+	 * numbers through a small bounded buffer between several threads, and
+	 * then outputs the contention report.
+	 *
+	 * @param args unused
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		enable();
+
+		final int items = 100000;
+
+		ProfiledWorkQueue queue = new ProfiledWorkQueue();
+		final CountDownLatch done = new CountDownLatch(items);
+		final LongAdder total = new LongAdder();
+
+		for (int i = 0; i < items; i++) {
+			final int item = i;
+
+			queue.execute(new Runnable() {
+				@Override
+				public void run() {
+					total.add(item);
+					done.countDown();
+				}
+			});
+		}
+
+		done.await();
+		queue.shutdown();
+		System.out.println(total.sum() + " total");
+
+		final ProfiledBoundedBuffer<Integer> buffer = new ProfiledBoundedBuffer<>(2);
+		Thread[] threads = new Thread[4];
+
+		for (int i = 0; i < threads.length; i++) {
+			final boolean producer = i % 2 == 0;
+
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < items; j++) {
+							if (producer) {
+								buffer.put(j);
+							}
+							else {
+								buffer.get();
+							}
+						}
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		System.out.println();
+		System.out.print(report());
+	}
+}
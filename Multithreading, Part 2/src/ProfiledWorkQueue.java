@@ -0,0 +1,149 @@
+import java.util.LinkedList;
+
+/**
+ * The same work queue as {@link WorkQueue}, except it uses a
+ * {@link ProfiledLock} instead of locking on the queue itself, so we can see
+ * how much the workers fight over the queue. Nothing is measured unless
+ * profiling is turned on.
+ *
+ * @see WorkQueue
+ * @see ProfiledLock
+ * @see <a href="http://www.ibm.com/developerworks/library/j-jtp0730/index.html">Java Theory and Practice: Thread Pools and Work Queues</a>
+ */
+public class ProfiledWorkQueue {
+
+	/** Pool of worker threads that will wait in the background until work is available. */
+	private final PoolWorker[] workers;
+
+	/** Queue of pending work requests. */
+	private final LinkedList<Runnable> queue;
+
+	/** Protects the queue, and lets workers wait until work is available. */
+	private final ProfiledLock lock;
+
+	/** Used to signal the queue should be shutdown. */
+	private volatile boolean shutdown;
+
+	/** The default number of threads to use when not specified. */
+	public static final int DEFAULT = 5;
+
+	/**
+	 * Starts a work queue with the default number of threads.
+	 * @see #ProfiledWorkQueue(int)
+	 */
+	public ProfiledWorkQueue() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 */
+	public ProfiledWorkQueue(int threads) {
+		this.queue   = new LinkedList<Runnable>();
+		this.lock    = new ProfiledLock("ProfiledWorkQueue.queue");
+		this.workers = new PoolWorker[threads];
+
+		shutdown = false;
+
+		// start the threads so they are waiting in the background
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new PoolWorker();
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Adds a work request to the queue. A thread will process this request
+	 * when available.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 */
+	public void execute(Runnable r) {
+		lock.lock();
+
+		try {
+			queue.addLast(r);
+			lock.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Asks the queue to shutdown. Any unprocessed work will not be finished,
+	 * but threads in-progress will not be interrupted.
+	 */
+	public void shutdown() {
+		shutdown = true;
+
+		lock.lock();
+
+		try {
+			lock.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads being used by the work queue.
+	 *
+	 * @return number of worker threads
+	 */
+	public int size() {
+		return workers.length;
+	}
+
+	/**
+	 * Waits until work is available in the work queue. When work is found, will
+	 * remove the work from the queue and run it. If a shutdown is detected,
+	 * will exit instead of grabbing new work from the queue. These threads will
+	 * continue running in the background until a shutdown is requested.
+	 */
+	private class PoolWorker extends Thread {
+
+		@Override
+		public void run() {
+			Runnable r = null;
+
+			while (true) {
+				lock.lock();
+
+				try {
+					while (queue.isEmpty() && !shutdown) {
+						try {
+							lock.await();
+						}
+						catch (InterruptedException ex) {
+							System.err.println("Warning: Work queue interrupted " +
+									"while waiting.");
+							Thread.currentThread().interrupt();
+						}
+					}
+
+					if (shutdown) {
+						break;
+					}
+					else {
+						r = queue.removeFirst();
+					}
+				}
+				finally {
+					lock.unlock();
+				}
+
+				try {
+					r.run();
+				}
+				catch (RuntimeException ex) {
+					System.err.println("Warning: Work queue encountered an " +
+							"exception while running.");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * An immutable snapshot of how far a directory scan has progressed. Snapshots
+ * are created without locking, so the values may be slightly out of date with
+ * each other while the scan is still running.
+ *
+ * Please note this class is designed to illustrate a specific concept, and is
+ * not an example of good class design outside of this context.
+ *
+ * @see MultithreadedDirectorySizeCalculator
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ */
+public class ScanProgress {
+
+	/** Number of directories visited so far. */
+	private final long directories;
+
+	/** Number of files found so far. */
+	private final long files;
+
+	/** Number of bytes found so far. */
+	private final long bytes;
+
+	/** Number of directories waiting in (or being handled by) the work queue. */
+	private final int pending;
+
+	/** Nanoseconds since the scan started. */
+	private final long elapsed;
+
+	/** Whether the scan finished before this snapshot was taken. */
+	private final boolean complete;
+
+	/** Whether the scan was cancelled before it could finish. */
+	private final boolean cancelled;
+
+	/**
+	 * Initializes a snapshot with the provided values.
+	 *
+	 * @param directories number of directories visited
+	 * @param files number of files found
+	 * @param bytes number of bytes found
+	 * @param pending number of directories not yet finished
+	 * @param elapsed nanoseconds since the scan started
+	 * @param cancelled whether the scan was cancelled
+	 */
+	public ScanProgress(long directories, long files, long bytes, int pending,
+			long elapsed, boolean cancelled) {
+		this.directories = directories;
+		this.files = files;
+		this.bytes = bytes;
+		this.pending = pending;
+		this.elapsed = elapsed;
+		this.complete = pending <= 0 && !cancelled;
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * @return number of directories visited
+	 */
+	public long getDirectories() {
+		return directories;
+	}
+
+	/**
+	 * @return number of files found
+	 */
+	public long getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return number of bytes found
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return number of directories not yet finished
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * @return nanoseconds since the scan started
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Returns whether this snapshot includes every file in the scan. If not,
+	 * the values are a lower bound on the actual totals.
+	 *
+	 * @return {@code true} if the scan was finished
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return {@code true} if the scan was cancelled before it finished
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns the average number of files found per second so far.
+	 *
+	 * @return files per second, or 0 if no time has elapsed
+	 */
+	public double getRate() {
+		return elapsed <= 0 ? 0 : files / (elapsed / 1000000000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d directories, %d files, %d bytes, %d pending, %.0f files/sec%s",
+				directories, files, bytes, pending, getRate(),
+				complete ? "" : cancelled ? " (cancelled)" : " (partial)");
+	}
+
+	/**
+	 * Receives periodic progress snapshots while a scan is running. Called from
+	 * a separate reporting thread, so implementations should return quickly and
+	 * must be thread-safe if they share data with other threads.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called with the latest progress snapshot.
+		 *
+		 * @param progress snapshot of the scan so far
+		 */
+		public void update(ScanProgress progress);
+	}
+}